@@ -1,6 +1,23 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.math.RoundingMode;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.ToLongFunction;
 
 /**
  * @author Benjamin Taylor
@@ -17,9 +34,12 @@ public class Assign1 {
     public static void main(String[] args) {
         if (args.length == 0 || args.length % 2 == 1) {
             System.out.print("--- Assign 1 Help ---\n" +
-                    "  -fib [n] : Compute the Fibonacci of [n]; valid range [0, 40]\n" +
+                    "  -fib [n] : Compute the Fibonacci of [n]; valid range [0, 2147483647]\n" +
+                    "  -fibmatrix [n] : Compute the Fibonacci of [n] by matrix powers; valid range [0, 2147483647]\n" +
                     "  -fac [n] : Compute the factorial of [n]; valid range, [0, 2147483647]\n" +
-                    "  -e [n] : Compute the value of 'e' using [n] iterations; valid range [1, 2147483647]\n");
+                    "  -e [n] : Compute the value of 'e' using [n] iterations; valid range [1, 2147483647]\n" +
+                    "  -edigits [n] : Compute the value of 'e' to [n] decimal places; valid range [1, 100000000]\n" +
+                    "  -batch [file] : Answer one '-flag n' request per line of [file], or of stdin when [file] is '-'\n");
             return;
         }
 
@@ -40,18 +60,19 @@ public class Assign1 {
                 }
             }
             // Check if it's fibonacci and catch if a user doesn't input a number following
-            else if (args[i].equals("-fib")) {
+            else if (args[i].equals("-fib") || args[i].equals("-fibmatrix")) {
                 try {
                     int fib = Integer.parseInt(args[i + 1]);
-                    if (fib <= 40 && fib >= 0) {
-                        System.out.printf("Fibonacci of %d is %d\n", fib, fibonacci(fib));
+                    if (fib <= 2147483647 && fib >= 0) {
+                        BigInteger result = args[i].equals("-fib") ? fibonacci(fib) : fibonacciMatrix(fib);
+                        System.out.printf("Fibonacci of %d is %s\n", fib, result.toString());
                     }
                     else {
                         throw new Exception();
                     }
                 }
                 catch (Exception e) {
-                    System.out.println("-fib [n] : Valid fibonacci range is [0, 40]");
+                    System.out.printf("%s [n] : Valid fibonacci range is [0, 2147483647]\n", args[i]);
                 }
             }
             // Checks if it's e and catches if a number is not following
@@ -69,6 +90,34 @@ public class Assign1 {
                     System.out.println("-e [n] : Valid e iterations range is [1, 2147483647]");
                 }
             }
+            // Checks if it's e to a number of digits and catches if a number is not following
+            else if (args[i].equals("-edigits")) {
+                try {
+                    int digits = Integer.parseInt(args[i + 1]);
+                    if (digits <= 100000000 && digits >= 1) {
+                        System.out.printf("Value of e to %d digits is %s\n", digits, eDigits(digits).toString());
+                    }
+                    else {
+                        throw new Exception();
+                    }
+                }
+                catch (Exception e) {
+                    System.out.println("-edigits [n] : Valid e digits range is [1, 100000000]");
+                }
+            }
+            // Checks if it's a batch of requests and catches if the file can't be read
+            else if (args[i].equals("-batch")) {
+                try (BufferedReader reader = args[i + 1].equals("-")
+                        ? new BufferedReader(new InputStreamReader(System.in))
+                        : Files.newBufferedReader(Paths.get(args[i + 1]))) {
+                    PrintWriter writer = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out)));
+                    batch(reader, writer);
+                    writer.flush();
+                }
+                catch (IOException e) {
+                    System.out.printf("-batch [file] : Could not read requests from %s\n", args[i + 1]);
+                }
+            }
             // If none of the above then it's an unknown command
             else {
                 System.out.printf("Unknown command line argument: %s\n", args[i]);
@@ -76,55 +125,525 @@ public class Assign1 {
         }
     }
 
+    // Requests are read and answered this many at a time, so output starts before the whole input has been read
+    private static final int BATCH_WINDOW = 4096;
+
+    // Number of results, and total bits of them, kept by each of the least recently used caches
+    private static final int CACHE_ENTRIES = 256;
+    private static final long CACHE_BITS = 1L << 28;
+
+    // Results already computed during this run, shared by every window of a batch
+    private static final ResultCache<Integer, BigInteger> factorialCache =
+            new ResultCache<>(CACHE_ENTRIES, BigInteger::bitLength);
+    private static final ResultCache<Integer, BigDecimal> eCache =
+            new ResultCache<>(CACHE_ENTRIES, value -> value.unscaledValue().bitLength());
+
+    /**
+     * Answers a stream of requests, one "-flag n" pair per line. Requests are read in windows; inside a window they are
+     * grouped by kind and sorted so that one ascending pass serves every one of them (the factorials become a running
+     * product, the e digits are all truncations of the largest request), and the answers are then written in the
+     * order the requests came in.
+     *
+     * @param reader where the requests are read from
+     * @param writer where the answers are written to
+     * @throws IOException if the requests can't be read
+     */
+    static void batch(BufferedReader reader, PrintWriter writer) throws IOException {
+        ArrayList<String> window = new ArrayList<>(BATCH_WINDOW);
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            window.add(line.trim());
+            if (window.size() == BATCH_WINDOW) {
+                answerWindow(window, writer);
+                window.clear();
+            }
+        }
+        answerWindow(window, writer);
+    }
+
+    /**
+     * Answers one window of batch requests and writes the answers in input order.
+     */
+    private static void answerWindow(ArrayList<String> window, PrintWriter writer) {
+        String[] answers = new String[window.size()];
+        // Each map goes from the requested n to the positions in the window that asked for it
+        TreeMap<Integer, ArrayList<Integer>> factorials = new TreeMap<>();
+        TreeMap<Integer, ArrayList<Integer>> fibonaccis = new TreeMap<>();
+        TreeMap<Integer, ArrayList<Integer>> matrices = new TreeMap<>();
+        TreeMap<Integer, ArrayList<Integer>> iterations = new TreeMap<>();
+        TreeMap<Integer, ArrayList<Integer>> digits = new TreeMap<>();
+
+        for (int i = 0; i < window.size(); i++) {
+            String[] request = window.get(i).split("\\s+");
+            int n;
+            try {
+                n = request.length == 2 ? Integer.parseInt(request[1]) : -1;
+            }
+            catch (NumberFormatException e) {
+                n = -1;
+            }
+            if (request[0].equals("-fac")) {
+                queue(factorials, n, 0, 2147483647, i, answers, "-fac [n] : Valid factorial range is [0, 2147483647]");
+            }
+            else if (request[0].equals("-fib")) {
+                queue(fibonaccis, n, 0, 2147483647, i, answers, "-fib [n] : Valid fibonacci range is [0, 2147483647]");
+            }
+            else if (request[0].equals("-fibmatrix")) {
+                queue(matrices, n, 0, 2147483647, i, answers,
+                        "-fibmatrix [n] : Valid fibonacci range is [0, 2147483647]");
+            }
+            else if (request[0].equals("-e")) {
+                queue(iterations, n, 1, 2147483647, i, answers, "-e [n] : Valid e iterations range is [1, 2147483647]");
+            }
+            else if (request[0].equals("-edigits")) {
+                queue(digits, n, 1, 100000000, i, answers, "-edigits [n] : Valid e digits range is [1, 100000000]");
+            }
+            else {
+                answers[i] = String.format("Unknown command line argument: %s", request[0]);
+            }
+        }
+
+        // Factorials: continue the running product from the largest cached factorial below the smallest request
+        int runningNum = 0;
+        BigInteger running = BigInteger.ONE;
+        if (!factorials.isEmpty()) {
+            for (Map.Entry<Integer, BigInteger> cached : factorialCache.entrySet()) {
+                if (cached.getKey() <= factorials.firstKey() && cached.getKey() > runningNum) {
+                    runningNum = cached.getKey();
+                    running = cached.getValue();
+                }
+            }
+        }
+        for (Map.Entry<Integer, ArrayList<Integer>> request : factorials.entrySet()) {
+            int num = request.getKey();
+            BigInteger result = factorialCache.get(num);
+            if (result == null) {
+                result = running.multiply(parallelProduct(runningNum + 1, num));
+                factorialCache.put(num, result);
+            }
+            running = result;
+            runningNum = Math.max(num, 1);
+            answer(answers, request.getValue(), String.format("Factorial of %d is %s", num, result.toString()));
+        }
+
+        // Fibonacci: close requests are reached by adding, far ones by fast doubling from the cached prefixes
+        int previous = -1;
+        BigInteger[] pair = null;
+        for (Map.Entry<Integer, ArrayList<Integer>> request : fibonaccis.entrySet()) {
+            int num = request.getKey();
+            if (pair != null && num - previous <= FIBONACCI_ADD_STEPS) {
+                for (; previous < num; previous++) {
+                    pair = new BigInteger[] { pair[1], pair[0].add(pair[1]) };
+                }
+            }
+            else {
+                fibonacci(num);
+                pair = fibonacciCache.get(num);
+                previous = num;
+            }
+            answer(answers, request.getValue(), String.format("Fibonacci of %d is %s", num, pair[1].toString()));
+        }
+
+        // Fibonacci by matrix powers: asked for by name, so each distinct request gets its own matrix power
+        for (Map.Entry<Integer, ArrayList<Integer>> request : matrices.entrySet()) {
+            BigInteger result = fibonacciMatrix(request.getKey());
+            answer(answers, request.getValue(),
+                    String.format("Fibonacci of %d is %s", request.getKey(), result.toString()));
+        }
+
+        // e by iterations: each one stops after a few dozen terms, so repeats are only grouped within the window
+        for (Map.Entry<Integer, ArrayList<Integer>> request : iterations.entrySet()) {
+            BigDecimal result = e(request.getKey());
+            answer(answers, request.getValue(),
+                    String.format("Value of e using %d iterations is %s", request.getKey(), result.toString()));
+        }
+
+        // e by digits: compute the largest request once and truncate it for all the smaller ones
+        if (!digits.isEmpty()) {
+            BigDecimal largest = eCache.get(digits.lastKey());
+            if (largest == null) {
+                largest = eDigits(digits.lastKey());
+                eCache.put(digits.lastKey(), largest);
+            }
+            for (Map.Entry<Integer, ArrayList<Integer>> request : digits.entrySet()) {
+                BigDecimal result = largest.setScale(request.getKey(), RoundingMode.DOWN);
+                answer(answers, request.getValue(),
+                        String.format("Value of e to %d digits is %s", request.getKey(), result.toString()));
+            }
+        }
+
+        for (String answer : answers) {
+            writer.println(answer);
+        }
+        writer.flush();
+    }
+
+    // Fibonacci requests at most this far past the previous one are reached by repeated addition
+    private static final int FIBONACCI_ADD_STEPS = 64;
+
+    /**
+     * Forgets every cached result, so timing runs measure the computation and not a cache hit.
+     */
+    static void clearCaches() {
+        factorialCache.clear();
+        fibonacciCache.clear();
+        eCache.clear();
+    }
+
+    /**
+     * Adds a batch request to its group if n is in range, otherwise records the range error as its answer.
+     */
+    private static void queue(TreeMap<Integer, ArrayList<Integer>> group, int n, int min, int max, int index,
+                              String[] answers, String error) {
+        if (n < min || n > max) {
+            answers[index] = error;
+        }
+        else {
+            group.computeIfAbsent(n, key -> new ArrayList<>()).add(index);
+        }
+    }
+
+    /**
+     * Gives the same answer to every position in the window that asked the same question.
+     */
+    private static void answer(String[] answers, ArrayList<Integer> indexes, String answer) {
+        for (int index : indexes) {
+            answers[index] = answer;
+        }
+    }
+
+    /**
+     * A map that only keeps its most recently used entries. Big results are expensive to keep around, so once the
+     * map holds more than maxEntries results or more than CACHE_BITS bits of them, the entries that have gone the
+     * longest without being read or written are dropped. The entry just added is always kept, even when it is bigger
+     * than the whole budget on its own.
+     */
+    private static class ResultCache<K, V> extends LinkedHashMap<K, V> {
+        private static final long serialVersionUID = 1L;
+
+        private final int maxEntries;
+        private final transient ToLongFunction<V> bits;
+
+        ResultCache(int maxEntries, ToLongFunction<V> bits) {
+            super(16, 0.75f, true);
+            this.maxEntries = maxEntries;
+            this.bits = bits;
+        }
+
+        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+            long total = 0;
+            for (V value : values()) {
+                total += bits.applyAsLong(value);
+            }
+            // Iteration runs from the least recently used entry, and the newest one is last
+            Iterator<V> oldest = values().iterator();
+            while (size() > 1 && (size() > maxEntries || total > CACHE_BITS)) {
+                total -= bits.applyAsLong(oldest.next());
+                oldest.remove();
+            }
+            return false;
+        }
+    }
+
     /**
-     * This is a recursive method to calculate the factorial of a number. Calls itself until it gets to 0 and multiplies
-     * each time. It uses BigInteger to maintain precision so the number can continue growing without limits of int size
+     * Calculates the factorial of a number with a product tree instead of recursing once per integer. The range [2, num]
+     * is multiplied as a balanced tree of partial products so the big multiplications happen between numbers of similar
+     * size, and the stack depth only grows with log(num). Large ranges are split over the common ForkJoinPool so
+     * subtrees are multiplied in parallel.
      *
      * @param num the number factorial to be calculated
      * @return It returns the calculated factorial
      */
-    private static BigInteger factorial(int num) {
-        if (num == 0) {
+    static BigInteger factorial(int num) {
+        if (num < 2) {
             return BigInteger.ONE;
         }
-        else {
-            return new BigInteger(String.valueOf(num)).multiply(factorial(num - 1));
+        return parallelProduct(2, num);
+    }
+
+    // Ranges smaller than this are multiplied on the calling thread, larger ones are split into ForkJoin subtasks
+    private static final int PARALLEL_PRODUCT_THRESHOLD = 1 << 14;
+
+    /**
+     * Multiplies every integer in [low, high] together, splitting large ranges over the common ForkJoinPool.
+     *
+     * @param low first integer of the range
+     * @param high last integer of the range, inclusive
+     * @return the product of the range, 1 if it is empty
+     */
+    static BigInteger parallelProduct(long low, long high) {
+        if (high - low < PARALLEL_PRODUCT_THRESHOLD) {
+            return product(low, high);
+        }
+        return ForkJoinPool.commonPool().invoke(new ProductTask(low, high));
+    }
+
+    /**
+     * Multiplies every integer in [low, high] together. Consecutive integers are packed into a long until it would
+     * overflow, and those partial products are then multiplied pairwise, level by level, until one number is left.
+     *
+     * @param low first integer of the range
+     * @param high last integer of the range, inclusive
+     * @return the product of the range
+     */
+    static BigInteger product(long low, long high) {
+        ArrayList<BigInteger> level = new ArrayList<>();
+        long partial = 1;
+        for (long i = low; i <= high; i++) {
+            if (partial > Long.MAX_VALUE / i) {
+                level.add(BigInteger.valueOf(partial));
+                partial = i;
+            }
+            else {
+                partial *= i;
+            }
+        }
+        level.add(BigInteger.valueOf(partial));
+
+        // Multiply neighbours together until only the root of the product tree remains
+        while (level.size() > 1) {
+            ArrayList<BigInteger> next = new ArrayList<>((level.size() + 1) / 2);
+            for (int i = 0; i + 1 < level.size(); i += 2) {
+                next.add(level.get(i).multiply(level.get(i + 1)));
+            }
+            if (level.size() % 2 == 1) {
+                next.add(level.get(level.size() - 1));
+            }
+            level = next;
+        }
+        return level.get(0);
+    }
+
+    /**
+     * Splits a product range in half until it is small enough to multiply directly, so both halves of the product tree
+     * can be built on different cores and joined with a single multiplication.
+     */
+    private static class ProductTask extends RecursiveTask<BigInteger> {
+        private static final long serialVersionUID = 1L;
+
+        private final long low;
+        private final long high;
+
+        ProductTask(long low, long high) {
+            this.low = low;
+            this.high = high;
+        }
+
+        protected BigInteger compute() {
+            if (high - low < PARALLEL_PRODUCT_THRESHOLD) {
+                return product(low, high);
+            }
+            long middle = (low + high) >>> 1;
+            ProductTask left = new ProductTask(low, middle);
+            left.fork();
+            BigInteger right = new ProductTask(middle + 1, high).compute();
+            return left.join().multiply(right);
         }
     }
 
+    // Fibonacci pairs {F(n), F(n+1)} already computed during this run, keyed by n
+    private static final ResultCache<Integer, BigInteger[]> fibonacciCache =
+            new ResultCache<>(CACHE_ENTRIES, pair -> pair[0].bitLength() + pair[1].bitLength());
+
+    // Operands with more bits than this have their products computed in parallel
+    private static final int PARALLEL_MULTIPLY_BITS = 1 << 20;
+
     /**
-     * Finds the fibonacci of the given number by adding the numbers together until it hits the designated number
+     * Finds the fibonacci of the given number with the fast doubling identities F(2k) = F(k)(2F(k+1) - F(k)) and
+     * F(2k+1) = F(k)^2 + F(k+1)^2, walking the bits of num from the most significant one. Every prefix of those bits is
+     * itself a fibonacci index, so the walk starts from the longest prefix already in the cache and later requests in
+     * the same run reuse the earlier work. As before, the sequence is indexed from 0 as 1, 1, 2, 3, 5, ... so the
+     * value returned is F(num + 1) of the doubling identities.
      *
      * @param num what number in the fibonacci sequence is wanted
      * @return Returns the fibonacci number
      */
-    private static int fibonacci(int num) {
-        int firstNumber = 1;
-        int secondNumber = 1;
-        int temp;
-        for (int i = 2; i <= num; i++) {
-            temp = secondNumber;
-            secondNumber = firstNumber + secondNumber;
-            firstNumber = temp;
+    static BigInteger fibonacci(int num) {
+        int start = 0;
+        BigInteger fk = BigInteger.ZERO;
+        BigInteger fk1 = BigInteger.ONE;
+        for (int shift = 0; shift < 32 && (num >>> shift) != 0; shift++) {
+            BigInteger[] cached = fibonacciCache.get(num >>> shift);
+            if (cached != null) {
+                start = shift;
+                fk = cached[0];
+                fk1 = cached[1];
+                break;
+            }
+            start = shift + 1;
+        }
+
+        for (int bit = start - 1; bit >= 0; bit--) {
+            // Double: F(2k) and F(2k+1) from F(k) and F(k+1)
+            BigInteger[] products = multiplyAll(fk, fk1.shiftLeft(1).subtract(fk), fk, fk, fk1, fk1);
+            BigInteger f2k = products[0];
+            BigInteger f2k1 = products[1].add(products[2]);
+            if (((num >>> bit) & 1) == 0) {
+                fk = f2k;
+                fk1 = f2k1;
+            }
+            else {
+                fk = f2k1;
+                fk1 = f2k.add(f2k1);
+            }
         }
-        return secondNumber;
+        fibonacciCache.put(num, new BigInteger[] { fk, fk1 });
+        return fk1;
+    }
+
+    /**
+     * Finds the fibonacci of the given number by raising the matrix [[1, 1], [1, 0]] to the num power with repeated
+     * squaring. The power is [[F(n+1), F(n)], [F(n), F(n-1)]], and since it is symmetric only three entries are kept.
+     * The top left entry F(n+1) is returned so both modes match the 1, 1, 2, 3, ... indexing of -fib.
+     *
+     * @param num what number in the fibonacci sequence is wanted
+     * @return Returns the fibonacci number
+     */
+    static BigInteger fibonacciMatrix(int num) {
+        // result = identity, base = [[1, 1], [1, 0]]; each matrix is stored as {top left, off diagonal, bottom right}
+        BigInteger[] result = { BigInteger.ONE, BigInteger.ZERO, BigInteger.ONE };
+        BigInteger[] base = { BigInteger.ONE, BigInteger.ONE, BigInteger.ZERO };
+        for (int n = num; n != 0; n >>>= 1) {
+            if ((n & 1) == 1) {
+                result = multiplySymmetric(result, base);
+            }
+            if (n > 1) {
+                base = multiplySymmetric(base, base);
+            }
+        }
+        return result[0];
+    }
+
+    /**
+     * Multiplies two symmetric 2x2 matrices. Powers of the fibonacci matrix commute, so the product is symmetric too.
+     */
+    private static BigInteger[] multiplySymmetric(BigInteger[] x, BigInteger[] y) {
+        BigInteger[] p = multiplyAll(x[0], y[0], x[1], y[1], x[0], y[1], x[1], y[2], x[2], y[2]);
+        return new BigInteger[] { p[0].add(p[1]), p[2].add(p[3]), p[1].add(p[4]) };
+    }
+
+    /**
+     * Multiplies the given operands in pairs, {a, b, c, d, ...} giving {a*b, c*d, ...}. When the operands are big
+     * enough the products are forked onto the common ForkJoinPool, otherwise they are done on the calling thread.
+     */
+    private static BigInteger[] multiplyAll(BigInteger... operands) {
+        BigInteger[] products = new BigInteger[operands.length / 2];
+        if (operands[0].bitLength() < PARALLEL_MULTIPLY_BITS) {
+            for (int i = 0; i < products.length; i++) {
+                products[i] = operands[2 * i].multiply(operands[2 * i + 1]);
+            }
+            return products;
+        }
+        ArrayList<ForkJoinTask<BigInteger>> tasks = new ArrayList<>();
+        for (int i = 0; i < products.length; i++) {
+            BigInteger x = operands[2 * i];
+            BigInteger y = operands[2 * i + 1];
+            tasks.add(ForkJoinPool.commonPool().submit(() -> x.multiply(y)));
+        }
+        for (int i = 0; i < products.length; i++) {
+            products[i] = tasks.get(i).join();
+        }
+        return products;
     }
 
     /**
      * Calculates the value of e using the Taylor series. This is done by applying the Taylor series and substituting 1
-     * in for x in the equation. BigDecimal is used to maintain precision as the numbers get increasingly small.
+     * in for x in the equation. Each term is 1/i!, so it is found by dividing the previous term by i rather than
+     * computing the factorial again, and the loop stops early once a term no longer changes the result at 16 places.
      *
      * @param iterations This is how many iterations the Taylor series is to go through
      * @return the bigDecimal found of the value of e
      */
-    private static BigDecimal e(int iterations) {
+    static BigDecimal e(int iterations) {
+        int scale = 16 + E_GUARD_DIGITS;
         BigDecimal e = new BigDecimal(0);
-        BigDecimal numerator = new BigDecimal(BigInteger.ONE);
-        for (int i = 0; i < iterations; i++) {
-            BigDecimal denominator = new BigDecimal(factorial(i));
-            e = e.add(numerator.divide(denominator, 16, RoundingMode.HALF_UP));
+        BigDecimal term = BigDecimal.ONE.setScale(scale);
+        for (int i = 0; i < iterations && term.signum() != 0; i++) {
+            if (i > 0) {
+                term = term.divide(BigDecimal.valueOf(i), scale, RoundingMode.DOWN);
+            }
+            e = e.add(term);
         }
         e = e.setScale(16, RoundingMode.HALF_UP);
         return e;
     }
+
+    // Extra digits carried while summing so the rounding error of every term stays below the requested precision
+    private static final int E_GUARD_DIGITS = 10;
+
+    // Below this many digits the incremental Taylor series is fast enough, above it binary splitting is used
+    private static final int E_BINARY_SPLITTING_DIGITS = 2000;
+
+    /**
+     * Calculates e to the given number of decimal places. Small requests keep a running term of the Taylor series and
+     * stop once the term drops below the precision. Large requests sum the same series with binary splitting, which
+     * turns the sum of 1/k! into a single fraction P/Q built from big multiplications and one final division.
+     *
+     * @param digits how many digits after the decimal point are wanted
+     * @return e truncated to the requested number of decimal places
+     */
+    static BigDecimal eDigits(int digits) {
+        int scale = digits + E_GUARD_DIGITS;
+        BigDecimal e;
+        if (digits < E_BINARY_SPLITTING_DIGITS) {
+            e = BigDecimal.ONE.setScale(scale);
+            BigDecimal term = e;
+            for (int i = 1; term.signum() != 0; i++) {
+                term = term.divide(BigDecimal.valueOf(i), scale, RoundingMode.DOWN);
+                e = e.add(term);
+            }
+        }
+        else {
+            // Find how many terms are needed so the first term left out, 1/k!, is below 10^-scale
+            int terms = 1;
+            double log10Factorial = 0;
+            while (log10Factorial < scale) {
+                terms++;
+                log10Factorial += Math.log10(terms);
+            }
+            BigInteger[] pq = ForkJoinPool.commonPool().invoke(new ESplitTask(0, terms));
+            e = BigDecimal.ONE.add(new BigDecimal(pq[0]).divide(new BigDecimal(pq[1]), scale, RoundingMode.DOWN));
+        }
+        return e.setScale(digits, RoundingMode.DOWN);
+    }
+
+    /**
+     * Binary splitting of the series sum over k in (a, b] of 1/((a+1)(a+2)...k). It returns {P, Q} with Q = (a+1)...b
+     * and P/Q equal to the partial sum, using P(a,b) = P(a,m)Q(m,b) + P(m,b) and Q(a,b) = Q(a,m)Q(m,b). The two halves
+     * are independent so the larger splits are forked onto the ForkJoinPool.
+     */
+    private static class ESplitTask extends RecursiveTask<BigInteger[]> {
+        private static final long serialVersionUID = 1L;
+
+        private final long a;
+        private final long b;
+
+        ESplitTask(long a, long b) {
+            this.a = a;
+            this.b = b;
+        }
+
+        protected BigInteger[] compute() {
+            if (b - a == 1) {
+                return new BigInteger[] { BigInteger.ONE, BigInteger.valueOf(b) };
+            }
+            long m = (a + b) >>> 1;
+            BigInteger[] left;
+            BigInteger[] right;
+            if (b - a < PARALLEL_PRODUCT_THRESHOLD) {
+                left = new ESplitTask(a, m).compute();
+                right = new ESplitTask(m, b).compute();
+            }
+            else {
+                ESplitTask leftTask = new ESplitTask(a, m);
+                leftTask.fork();
+                right = new ESplitTask(m, b).compute();
+                left = leftTask.join();
+            }
+            return new BigInteger[] { left[0].multiply(right[1]).add(right[0]), left[1].multiply(right[1]) };
+        }
+    }
 }
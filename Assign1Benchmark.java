@@ -0,0 +1,189 @@
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.function.IntFunction;
+
+/**
+ * @author Benjamin Taylor
+ *
+ * Times the Assign1 numeric kernels over a range of input sizes and writes the results as JSON, one record per line,
+ * so the output of two commits can be diffed directly. Every kernel is measured for its average time per operation and
+ * the bytes it allocates per operation (counted over all threads, since the big products run on the ForkJoinPool). The
+ * original implementations of factorial, fibonacci and e are kept below as the "legacy" engine to compare against.
+ *
+ * Compile and run from the repository root with:
+ *   javac Assign1.java Assign1Benchmark.java
+ *   java Assign1Benchmark [-sizes 10,1000,100000,1000000] [-kernels fac,fib,fibmatrix,e,edigits] [-out file.json]
+ */
+public class Assign1Benchmark {
+    // The legacy kernels recurse once per integer or are quadratic, so larger sizes are recorded as skipped
+    private static final int LEGACY_LIMIT = 10000;
+
+    private static final long WARMUP_NANOS = 1_000_000_000L;
+    private static final long MEASURE_NANOS = 2_000_000_000L;
+    private static final int MIN_MEASURED_OPS = 3;
+
+    // Results are folded in here so the JIT can't discard the computations being timed
+    private static long sink;
+
+    public static void main(String[] args) throws IOException {
+        int[] sizes = { 10, 1000, 100000, 1000000 };
+        String kernels = "fac,fib,fibmatrix,e,edigits";
+        String out = "assign1-benchmark.json";
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (args[i].equals("-sizes")) {
+                String[] values = args[i + 1].split(",");
+                sizes = new int[values.length];
+                for (int j = 0; j < values.length; j++) {
+                    sizes[j] = (int) Double.parseDouble(values[j]);
+                }
+            }
+            else if (args[i].equals("-kernels")) {
+                kernels = args[i + 1];
+            }
+            else if (args[i].equals("-out")) {
+                out = args[i + 1];
+            }
+            else {
+                System.out.printf("Unknown command line argument: %s\n", args[i]);
+                return;
+            }
+        }
+
+        ArrayList<String> records = new ArrayList<>();
+        for (String kernel : kernels.split(",")) {
+            for (int size : sizes) {
+                if (kernel.equals("fac")) {
+                    records.add(measure(kernel, "current", size, n -> Assign1.factorial(n).bitLength()));
+                    records.add(measure(kernel, "legacy", size, n -> legacyFactorial(n).bitLength()));
+                }
+                else if (kernel.equals("fib")) {
+                    records.add(measure(kernel, "current", size, n -> Assign1.fibonacci(n).bitLength()));
+                    records.add(measure(kernel, "legacy", size, n -> legacyFibonacci(n)));
+                }
+                else if (kernel.equals("fibmatrix")) {
+                    records.add(measure(kernel, "current", size, n -> Assign1.fibonacciMatrix(n).bitLength()));
+                }
+                else if (kernel.equals("e")) {
+                    records.add(measure(kernel, "current", size, n -> Assign1.e(n).unscaledValue().bitLength()));
+                    records.add(measure(kernel, "legacy", size, n -> legacyE(n).unscaledValue().bitLength()));
+                }
+                else if (kernel.equals("edigits")) {
+                    records.add(measure(kernel, "current", size, n -> Assign1.eDigits(n).unscaledValue().bitLength()));
+                }
+                else {
+                    System.out.printf("Unknown kernel: %s\n", kernel);
+                }
+            }
+        }
+
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(Paths.get(out)))) {
+            writer.println("[");
+            for (int i = 0; i < records.size(); i++) {
+                writer.println("  " + records.get(i) + (i + 1 < records.size() ? "," : ""));
+            }
+            writer.println("]");
+        }
+        System.out.printf("Wrote %d results to %s\n", records.size(), out);
+    }
+
+    /**
+     * Runs one kernel at one size: first warms it up, then times it until enough operations and enough time have gone
+     * by. The caches in Assign1 are cleared before every operation so each one does the full computation. Time and
+     * allocation are read once around the whole measured loop so reading them doesn't skew the small sizes.
+     *
+     * @return the JSON record for this measurement
+     */
+    private static String measure(String kernel, String engine, int size, IntFunction<Integer> operation) {
+        if (engine.equals("legacy") && size > LEGACY_LIMIT) {
+            System.out.printf("%-10s %-8s %,10d : skipped\n", kernel, engine, size);
+            return String.format("{\"kernel\": \"%s\", \"engine\": \"%s\", \"size\": %d, \"skipped\": true}",
+                    kernel, engine, size);
+        }
+
+        long start = System.nanoTime();
+        do {
+            Assign1.clearCaches();
+            sink += operation.apply(size);
+        } while (System.nanoTime() - start < WARMUP_NANOS);
+
+        int ops = 0;
+        long elapsed = 0;
+        long bytesBefore = allocatedBytes();
+        start = System.nanoTime();
+        while (ops < MIN_MEASURED_OPS || elapsed < MEASURE_NANOS) {
+            Assign1.clearCaches();
+            sink += operation.apply(size);
+            elapsed = System.nanoTime() - start;
+            ops++;
+        }
+        long allocated = allocatedBytes() - bytesBefore;
+
+        double nanosPerOp = (double) elapsed / ops;
+        double bytesPerOp = (double) allocated / ops;
+        System.out.printf("%-10s %-8s %,10d : %,16.0f ns/op %,18.0f B/op\n", kernel, engine, size, nanosPerOp, bytesPerOp);
+        return String.format("{\"kernel\": \"%s\", \"engine\": \"%s\", \"size\": %d, \"ops\": %d, "
+                + "\"nanosPerOp\": %.0f, \"bytesPerOp\": %.0f}", kernel, engine, size, ops, nanosPerOp, bytesPerOp);
+    }
+
+    /**
+     * Total bytes allocated so far by every live thread in the JVM.
+     */
+    private static long allocatedBytes() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long total = 0;
+        for (long bytes : threads.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+            if (bytes > 0) {
+                total += bytes;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * The original recursive factorial, one BigInteger built from a String per level.
+     */
+    private static BigInteger legacyFactorial(int num) {
+        if (num == 0) {
+            return BigInteger.ONE;
+        }
+        else {
+            return new BigInteger(String.valueOf(num)).multiply(legacyFactorial(num - 1));
+        }
+    }
+
+    /**
+     * The original int fibonacci; it overflows past 46 but still does the same amount of work.
+     */
+    private static int legacyFibonacci(int num) {
+        int firstNumber = 1;
+        int secondNumber = 1;
+        int temp;
+        for (int i = 2; i <= num; i++) {
+            temp = secondNumber;
+            secondNumber = firstNumber + secondNumber;
+            firstNumber = temp;
+        }
+        return secondNumber;
+    }
+
+    /**
+     * The original e, recomputing the factorial for every term of the Taylor series.
+     */
+    private static BigDecimal legacyE(int iterations) {
+        BigDecimal e = new BigDecimal(0);
+        BigDecimal numerator = new BigDecimal(BigInteger.ONE);
+        for (int i = 0; i < iterations; i++) {
+            BigDecimal denominator = new BigDecimal(legacyFactorial(i));
+            e = e.add(numerator.divide(denominator, 16, RoundingMode.HALF_UP));
+        }
+        e = e.setScale(16, RoundingMode.HALF_UP);
+        return e;
+    }
+}
@@ -0,0 +1,48 @@
+import java.lang.management.ManagementFactory;
+
+/**
+ * Checks that computing blocks allocates nothing once the JIT has warmed up, along the same path a worker thread takes:
+ * claim a range from the task queue, compute each block, store it in the result table. The bytes are read from the
+ * JVM's count of what the current thread has allocated, around one pass over the positions after a few passes to warm
+ * up. There are no test classes in this project, so this runs from the command line with -alloccheck.
+ *
+ * @author Benjamin Taylor
+ */
+public class AllocationCheck {
+    private static final int WARMUP_PASSES = 3;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    /**
+     * Runs the positions through the engine until it is warm, then once more while counting.
+     *
+     * @param positions the positions to compute
+     * @param engine the engine to check, with any tables it needs already set up
+     * @param digitsPerTask the distance between the first positions of two neighbouring blocks
+     * @return the bytes allocated by the counted pass, or -1 if the JVM can't count them
+     */
+    public static long bytesAllocated(int[] positions, PiEngine engine, int digitsPerTask) {
+        if (!THREADS.isThreadAllocatedMemorySupported()) {
+            return -1;
+        }
+        THREADS.setThreadAllocatedMemoryEnabled(true);
+        long bytes = 0;
+        for (int pass = 0; pass <= WARMUP_PASSES; pass++) {
+            TaskQueue taskQueue = new TaskQueue(positions, 1);
+            ResultTable results = new ResultTable(positions.length, digitsPerTask);
+            WorkerStats.Worker worker = new WorkerStats().worker();
+
+            long before = THREADS.getCurrentThreadAllocatedBytes();
+            long range;
+            while ((range = taskQueue.claim()) >= 0) {
+                for (int i = TaskQueue.start(range), end = TaskQueue.end(range); i < end; i++) {
+                    int position = taskQueue.get(i);
+                    results.put(position, worker.compute(engine, position));
+                }
+            }
+            bytes = THREADS.getCurrentThreadAllocatedBytes() - before;
+        }
+        return bytes;
+    }
+}
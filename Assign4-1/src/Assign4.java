@@ -1,57 +1,455 @@
-import java.util.ArrayList;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
 
 /**
  * @author Benjamin Taylor A02021288
  *
- * This class runs our computations for calculating 1000 digits of pi after the decimal
+ * This class runs our computations for calculating digits of pi after the decimal, 1000 of them unless -digits says
+ * otherwise. Each task computes a block of digits starting at its position; all but the last are kept and the last is
+ * a guard that must agree with the first digit of the next block. The default engine computes decimal digits directly,
+ * the hex engine computes hexadecimal digits with BBP and converts the whole prefix to decimal at the end. Digits are
+ * written as soon as every block before them is finished, to the console or to the file given with -out.
  */
 public class Assign4 {
+    // Extra hex digits computed past what the decimal digits need, so the conversion doesn't round the last ones
+    private static final int HEX_GUARD_DIGITS = 8;
+
     public static void main(String[] args) {
-        // Create an array list, place 1000 digits in it, and then shuffle them
-        ArrayList<Integer> thousand = new ArrayList<>();
-        for (int i = 0; i < 1000; i++) {
-            thousand.add(i+1);
+        int digits = 1000;
+        String engineName = "bellard";
+        int chunkSize = 1;
+        String outFile = null;
+        String schedule = "ascending";
+        String checkpointFile = null;
+        int coordinatorPort = -1;
+        int leaseSeconds = 300;
+        String coordinatorAddress = null;
+        String mode = "threads";
+        boolean printStats = false;
+        double verifyFraction = 0;
+        boolean allocCheck = false;
+        int metricsPort = -1;
+        String metricsLog = null;
+        for (int i = 0; i < args.length; i += 2) {
+            try {
+                if (args[i].equals("-digits")) {
+                    digits = Integer.parseInt(args[i + 1]);
+                    if (digits < 1) {
+                        throw new Exception();
+                    }
+                }
+                else if (args[i].equals("-engine")) {
+                    engineName = args[i + 1];
+                    if (!engineName.matches("bellard|vector|hex")) {
+                        throw new Exception();
+                    }
+                }
+                else if (args[i].equals("-chunk")) {
+                    chunkSize = Integer.parseInt(args[i + 1]);
+                    if (chunkSize < 1) {
+                        throw new Exception();
+                    }
+                }
+                else if (args[i].equals("-schedule")) {
+                    schedule = args[i + 1];
+                    if (!schedule.matches("ascending|shuffle|largest|guided|steal")) {
+                        throw new Exception();
+                    }
+                }
+                else if (args[i].equals("-mode")) {
+                    mode = args[i + 1];
+                    if (!mode.matches(PiExecution.MODES)) {
+                        throw new Exception();
+                    }
+                }
+                else if (args[i].equals("-stats")) {
+                    printStats = Boolean.parseBoolean(args[i + 1]);
+                }
+                else if (args[i].equals("-verify")) {
+                    verifyFraction = Double.parseDouble(args[i + 1]);
+                    if (!(verifyFraction >= 0 && verifyFraction <= 1)) {
+                        throw new Exception();
+                    }
+                }
+                else if (args[i].equals("-alloccheck")) {
+                    allocCheck = Boolean.parseBoolean(args[i + 1]);
+                }
+                else if (args[i].equals("-metrics")) {
+                    metricsPort = Integer.parseInt(args[i + 1]);
+                    if (metricsPort < 0 || metricsPort > 65535) {
+                        throw new Exception();
+                    }
+                }
+                else if (args[i].equals("-metricslog")) {
+                    metricsLog = args[i + 1];
+                }
+                else if (args[i].equals("-checkpoint")) {
+                    checkpointFile = args[i + 1];
+                }
+                else if (args[i].equals("-coordinator")) {
+                    coordinatorPort = Integer.parseInt(args[i + 1]);
+                    if (coordinatorPort < 0 || coordinatorPort > 65535) {
+                        throw new Exception();
+                    }
+                }
+                else if (args[i].equals("-lease")) {
+                    leaseSeconds = Integer.parseInt(args[i + 1]);
+                    if (leaseSeconds < 0 || leaseSeconds > Integer.MAX_VALUE / 1000) {
+                        throw new Exception();
+                    }
+                }
+                else if (args[i].equals("-worker")) {
+                    coordinatorAddress = args[i + 1];
+                    if (!coordinatorAddress.matches(".+:\\d+")) {
+                        throw new Exception();
+                    }
+                }
+                else if (args[i].equals("-out")) {
+                    outFile = args[i + 1];
+                }
+                else {
+                    System.out.printf("Unknown command line argument: %s\n", args[i]);
+                    return;
+                }
+            }
+            catch (Exception e) {
+                System.out.println("  -digits [n] : Number of digits to compute; valid range [1, " + maxDigits(false) +
+                        "], or [1, " + maxDigits(true) + "] with -engine hex\n" +
+                        "  -engine [bellard|vector|hex] : Compute decimal digits directly, several primes at a time in\n" +
+                        "      vector lanes (needs --add-modules jdk.incubator.vector), or hex digits converted to decimal\n" +
+                        "  -chunk [n] : Number of blocks a thread claims at a time; valid range [1, 2147483647]\n" +
+                        "  -schedule [ascending|shuffle|largest|guided|steal] : Order the blocks are handed out in:\n" +
+                        "      lowest first, random, most expensive first, lowest first in chunks that shrink with the\n" +
+                        "      estimated work left, or split over a ForkJoin work stealing pool (same as -mode forkjoin)\n" +
+                        "  -mode [threads|pool|forkjoin|virtual] : Run the blocks on a thread per processor, a fixed\n" +
+                        "      thread pool, a ForkJoin work stealing pool, or a virtual thread per chunk\n" +
+                        "  -stats [true|false] : Print how long each worker was busy and idle\n" +
+                        "  -verify [fraction] : Recompute this fraction of the blocks from a shifted position and report\n" +
+                        "      any that disagree, e.g. 0.05 for a sample or 1 for every block; valid range [0, 1]\n" +
+                        "  -alloccheck [true|false] : Instead of printing pi, check that computing the blocks allocates\n" +
+                        "      nothing once warmed up, and exit with 1 if it does\n" +
+                        "  -metrics [port] : Serve live metrics in the Prometheus text format at http://localhost:[port]/metrics\n" +
+                        "  -metricslog [file|-] : Append the live metrics to [file] once a second as JSON lines, - for stderr\n" +
+                        "  -checkpoint [file] : Record finished blocks in [file] and skip the ones already in it; a\n" +
+                        "      [file] from another engine or -digits is left alone and the run stops\n" +
+                        "  -coordinator [port] : Hand the blocks out to worker processes connecting on [port]\n" +
+                        "  -lease [seconds] : How long a worker can take on one block before the coordinator hands it to\n" +
+                        "      another worker, 0 for no limit; blocks far into pi can take longer than the default 300\n" +
+                        "  -worker [host:port] : Compute blocks for the coordinator at [host:port], then exit\n" +
+                        "  -out [file] : Write the digits to [file] instead of the console");
+                return;
+            }
+        }
+
+        // A worker takes everything else from the coordinator, and runs one connection per processor
+        if (coordinatorAddress != null) {
+            int split = coordinatorAddress.lastIndexOf(':');
+            String host = coordinatorAddress.substring(0, split);
+            int port = Integer.parseInt(coordinatorAddress.substring(split + 1));
+            Thread[] connections = new Thread[Runtime.getRuntime().availableProcessors()];
+            for (int i = 0; i < connections.length; i++) {
+                connections[i] = new Thread(new PiWorker(host, port));
+                connections[i].start();
+            }
+            for (Thread t : connections) {
+                try {
+                    t.join();
+                }
+                catch (InterruptedException e) {
+                    return;
+                }
+            }
+            return;
         }
-        java.util.Collections.shuffle(thousand);
 
-        // Initialize a new taskqueue to be a shared resource for threads, and then place the randomized 1000 digits in it
-        TaskQueue taskQueue = new TaskQueue();
-        for (int i = 0; i < 1000; i++) {
-            taskQueue.enqueue(thousand.get(i));
+        // Past this the positions, or the primes and numbers sized from them, no longer fit
+        boolean hex = engineName.equals("hex");
+        if (digits > maxDigits(hex)) {
+            System.out.printf("-digits [n] : The %s engine can compute at most %d digits\n", engineName, maxDigits(hex));
+            return;
         }
 
+        // The steal schedule was the ForkJoin mode before there were modes
+        if (schedule.equals("steal")) {
+            mode = "forkjoin";
+        }
+
+        // The hex engine works in its own digits, enough of them to cover the decimal ones
+        int radix = hex ? 16 : 10;
+        int digitsPerTask = hex ? BbpHex.DIGITS_PER_TASK : Bpp.DIGITS_PER_TASK;
+        int engineDigits = hex ? (int) Math.ceil(digits * Math.log(10) / Math.log(16)) + HEX_GUARD_DIGITS : digits;
+
+        // Create an array with the first position of every block. One extra block past the end is computed so the last
+        // block that is printed also has a neighbour to check its guard digit against
+        int blocks = (engineDigits + digitsPerTask - 1) / digitsPerTask + 1;
+        int[] positions = orderPositions(schedule, blocks, digitsPerTask);
+
         //debugging purposes
 //        System.out.printf("Number of cpus: %d\n", Runtime.getRuntime().availableProcessors());
 
-        // Find the number of processors and initialize a result table to be a shared resource for threads
+        // Find the number of processors and initialize a result table to be a shared resource for threads. For the
+        // decimal engine the primes are sieved once, up to what the last block needs, and shared read only by every thread
         int numberOfProcessors = Runtime.getRuntime().availableProcessors();
-        ResultTable results = new ResultTable();
+        ResultTable results = new ResultTable(blocks, digitsPerTask);
+        PrimeSieve primes = hex ? null : PrimeSieve.forPosition((long) (blocks - 1) * digitsPerTask + 1);
+        boolean vector = engineName.equals("vector") && Bpp.vectorSupported();
+        if (engineName.equals("vector") && !vector && coordinatorPort < 0) {
+            System.out.println("The vector engine needs --add-modules jdk.incubator.vector and a vector unit, using bellard");
+        }
+        Supplier<PiEngine> engines = hex ? BbpHex::new : vector ? () -> new BppVector(primes) : () -> new Bpp(primes);
+
+        // The hot path from claiming a position to storing its block should allocate nothing in steady state
+        if (allocCheck) {
+            long bytes = AllocationCheck.bytesAllocated(positions, engines.get(), digitsPerTask);
+            if (bytes < 0) {
+                System.out.println("This JVM can't count allocated bytes");
+                return;
+            }
+            System.out.printf("%s engine: %d bytes allocated for %d blocks, %.3f bytes per digit\n", engineName, bytes,
+                    blocks, (double) bytes / ((long) blocks * digitsPerTask));
+            if (bytes > 0) {
+                System.exit(1);
+            }
+            return;
+        }
+
+        // Read back any blocks a previous run already finished, record every new one from here on, and leave only the
+        // unfinished positions for the threads
+        Checkpoint checkpoint = null;
+        if (checkpointFile != null) {
+            try {
+                checkpoint = new Checkpoint(checkpointFile, results, radix, digitsPerTask, digits);
+                results.setCheckpoint(checkpoint);
+                positions = unfinished(positions, results);
+                System.out.printf("Restored %d of %d blocks from %s\n", checkpoint.restored(), blocks, checkpointFile);
+            }
+            catch (IOException ex) {
+                System.out.printf("Could not open the checkpoint: %s\n", ex.getMessage());
+                return;
+            }
+        }
+
+        // Initialize a new taskqueue over the positions to be a shared resource for threads, with chunks guided by the
+        // engine's cost estimate if asked for
+        TaskQueue taskQueue;
+        if (schedule.equals("guided")) {
+            PiEngine estimator = engines.get();
+            double[] costs = new double[positions.length];
+            for (int i = 0; i < positions.length; i++) {
+                costs[i] = estimator.estimateCost(positions[i]);
+            }
+            taskQueue = new TaskQueue(positions, costs, numberOfProcessors);
+        }
+        else {
+            taskQueue = new TaskQueue(positions, chunkSize);
+        }
+
+        // As a coordinator the queue's chunks become leases for the worker processes instead of work for local threads
+        Coordinator coordinator = null;
+        if (coordinatorPort >= 0) {
+            try {
+                coordinator = new Coordinator(coordinatorPort, taskQueue, results, engineName, radix, digitsPerTask,
+                        (blocks - 1) * digitsPerTask + 1, leaseSeconds * 1000);
+                System.out.printf("Waiting for workers on port %d\n", coordinator.getPort());
+            }
+            catch (IOException ex) {
+                System.out.printf("Could not listen for workers: %s\n", ex.getMessage());
+                return;
+            }
+        }
         try {
-            // Create an array of threads the size of the number of processors and begin tracking the time
-            Thread[] threads = new Thread[numberOfProcessors];
+            // The digits go straight to the console or the file through a channel, so they aren't printed one at a time
+            System.out.print(outFile == null ? "\n3." : "");
+            System.out.flush();
+            WritableByteChannel channel = outFile == null
+                    ? new FileOutputStream(FileDescriptor.out).getChannel()
+                    : FileChannel.open(Paths.get(outFile), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                            StandardOpenOption.TRUNCATE_EXISTING);
+            if (outFile != null) {
+                channel.write(ByteBuffer.wrap("3.".getBytes(StandardCharsets.US_ASCII)));
+            }
+            // The blocks run on the chosen execution mode, sized to the number of processors, unless workers do them
+            PiExecution execution = coordinator != null ? null
+                    : new PiExecution(mode, numberOfProcessors, positions, taskQueue, results, engines);
+            // Live metrics are sampled by their own thread, and served or logged only when asked for. They are set up
+            // before the writer starts so a port that is taken doesn't leave it waiting for blocks
+            PiMetrics metrics = null;
+            Thread sampler = null;
+            if (metricsPort >= 0 || metricsLog != null) {
+                metrics = new PiMetrics(results, execution, taskQueue, engines.get(), digitsPerTask);
+                if (metricsPort >= 0) {
+                    metrics.serve(metricsPort);
+                    System.err.printf("Serving metrics on port %d\n", metrics.getPort());
+                }
+                if (metricsLog != null) {
+                    metrics.logTo(metricsLog.equals("-") ? System.err
+                            : new PrintStream(new FileOutputStream(metricsLog, true), true));
+                }
+                sampler = new Thread(metrics);
+                sampler.setDaemon(true);
+                sampler.start();
+            }
+            PiWriter piWriter = new PiWriter(results, blocks, digitsPerTask, radix, digits, channel);
+            Thread writer = new Thread(piWriter);
+
+            // Begin tracking the time and start the writer so it can print each block as soon as it can
             long timeStart = System.currentTimeMillis();
-            // Initialize each thread and pass it a runnable object to know what to do and also pass in the shared resources, then start the thread
-            for (int i = 0; i < numberOfProcessors; i++) {
-                threads[i] = new Thread(new ComputePiDigit(taskQueue, results, Integer.toString(i)));
-                threads[i].start();
+            writer.start();
+            // Progress is printed by its own thread so the workers never touch the console, but only when the digits
+            // are going to a file; on the console the digits themselves show the progress
+            Thread progress = new Thread(new ProgressSampler(results));
+            progress.setDaemon(true);
+            if (outFile != null) {
+                progress.start();
             }
-            // Wait for the threads to finish and track when the processes complete
-            for (Thread t : threads) {
-                t.join();
+            // Finished blocks are forced to disk in batches by their own thread instead of once per block
+            if (checkpoint != null) {
+                Thread sync = new Thread(checkpoint);
+                sync.setDaemon(true);
+                sync.start();
             }
+            // A failed worker stops the writer through the result table; everything is still shut down and the file
+            // closed before the failure is thrown
+            ExecutionException failure = null;
+            if (coordinator != null) {
+                Thread accept = new Thread(coordinator);
+                accept.setDaemon(true);
+                accept.start();
+            }
+            else {
+                try {
+                    execution.run();
+                }
+                catch (ExecutionException ex) {
+                    failure = ex;
+                }
+            }
+            writer.join();
             long timeEnd = System.currentTimeMillis();
-            //Prints out pi and the time it took
-            System.out.flush();
-            System.out.print("\n3.");
-            for (int i = 0; i < 1000; i++) {
-                System.out.print(results.get(i+1));
+            if (metrics != null) {
+                metrics.stop();
+                sampler.interrupt();
+                sampler.join();
             }
+            if (coordinator != null) {
+                coordinator.close();
+            }
+            if (checkpoint != null) {
+                checkpoint.close();
+            }
+            if (outFile != null) {
+                progress.join();
+                channel.close();
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            if (piWriter.getFailure() != null) {
+                throw piWriter.getFailure();
+            }
+            //Prints the time it took
             System.out.printf("\nPi computation took: %.2f sec\n", (timeEnd - timeStart) / 1000.0);
+            if (printStats && execution != null) {
+                execution.getStats().report(mode, numberOfProcessors);
+            }
+
+            // Check a share of the written digits a second way before they are trusted
+            if (verifyFraction > 0) {
+                Verifier verifier = new Verifier(piWriter, engines, blocks, digitsPerTask, radix);
+                verifier.verify(verifyFraction, numberOfProcessors);
+                System.out.printf("Verified %d of %d blocks in %.2f sec, %.1f blocks/sec, %.1f%% of the computation time\n",
+                        verifier.getChecked(), blocks - 1, verifier.getSeconds(),
+                        verifier.getChecked() / verifier.getSeconds(),
+                        100 * verifier.getSeconds() / ((timeEnd - timeStart) / 1000.0));
+                for (int position : verifier.getMismatches()) {
+                    System.out.printf("Digits at position %d failed verification\n", position);
+                }
+                if (!verifier.getMismatches().isEmpty()) {
+                    System.out.printf("%d blocks failed verification\n", verifier.getMismatches().size());
+                    System.exit(1);
+                }
+            }
+        }
+        catch (ExecutionException ex) {
+            // Threads of the pool modes may still be working through their chunks, so exit rather than wait for them
+            System.out.printf("\nCould not compute the digits: %s\n", ex.getCause());
+            System.exit(1);
+        }
+        catch (IOException ex) {
+            System.out.printf("Could not write the digits: %s\n", ex.getMessage());
         }
         catch (Exception ex) {
             System.out.println("Something bad happened :(");
         }
+    }
 
+    /**
+     * The most digits an engine can be asked for. The decimal engines sieve the primes up to 2N for the last block's
+     * position, and those have to fit in an int. The hex engine converts all of its digits with one BigInteger
+     * multiplication, whose product can have at most Integer.MAX_VALUE bits. Below both limits every position and
+     * every count of digits fits in an int.
+     *
+     * @param hex whether it is the hex engine
+     */
+    private static int maxDigits(boolean hex) {
+        if (hex) {
+            // The hex fraction and 10^digits each take log2(10) bits per decimal digit, plus the guard digits
+            return (int) ((Integer.MAX_VALUE - 1024) / (2 * Math.log(10) / Math.log(2)));
+        }
+        // The last block, the extra one past the end, starts at most DIGITS_PER_TASK past the last digit
+        return (int) ((PrimeSieve.maxPosition() - 1) / Bpp.DIGITS_PER_TASK * Bpp.DIGITS_PER_TASK);
+    }
 
+    /**
+     * Drops the positions whose blocks are already in the result table, keeping the rest in the same order.
+     */
+    private static int[] unfinished(int[] positions, ResultTable results) {
+        int count = 0;
+        int[] left = new int[positions.length];
+        for (int position : positions) {
+            if (results.get(position) == -1) {
+                left[count++] = position;
+            }
+        }
+        return Arrays.copyOf(left, count);
+    }
+
+    /**
+     * Puts the first position of every block in the order the schedule hands them out. The blocks get more expensive
+     * the further into pi they are, so handing out the most expensive first keeps one thread from being left alone
+     * with the last big block; lowest first lets the output start early instead.
+     *
+     * @param schedule name of the schedule
+     * @param blocks how many blocks there are
+     * @param digitsPerTask distance between the first positions of two neighbouring blocks
+     * @return the positions in order
+     */
+    private static int[] orderPositions(String schedule, int blocks, int digitsPerTask) {
+        int[] positions = new int[blocks];
+        for (int i = 0; i < blocks; i++) {
+            positions[i] = (schedule.equals("largest") ? blocks - 1 - i : i) * digitsPerTask + 1;
+        }
+        if (schedule.equals("shuffle")) {
+            Random random = new Random();
+            for (int i = blocks - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int swap = positions[i];
+                positions[i] = positions[j];
+                positions[j] = swap;
+            }
+        }
+        return positions;
     }
 }
@@ -0,0 +1,62 @@
+/**
+ * Computes hexadecimal digits of pi with the Bailey-Borwein-Plouffe formula,
+ * pi = sum over k of 16^-k (4/(8k+1) - 2/(8k+4) - 1/(8k+5) - 1/(8k+6)).
+ * Multiplying by 16^(n-1) and keeping only the fractional part gives the digits starting at position n: the terms
+ * before n become 16^(n-1-k) mod (8k+j) / (8k+j), and the terms after it shrink by 16 each, so only a few are needed.
+ * Each block costs O(n log n) with constant memory, against the much faster growing cost of the base 10 Bpp.
+ *
+ * @author Benjamin Taylor
+ */
+public class BbpHex implements PiEngine {
+    // 7 hex digits come out of the double sum; 6 are kept and the 7th is the guard
+    public static final int DIGITS_PER_TASK = 6;
+    private static final double BLOCK_SCALE = Math.pow(16, DIGITS_PER_TASK + 1);
+
+    private ModMath mod = new ModMath();    // arithmetic mod 8k+j, reset for every term
+
+    public int getRadix() {
+        return 16;
+    }
+
+    public int getDigitsPerTask() {
+        return DIGITS_PER_TASK;
+    }
+
+    // n terms in each of the four series, each needing a power of 16 with about log2(n) squarings
+    public double estimateCost(long n) {
+        return n * (Math.log(n + 1) + 1);
+    }
+
+    /**
+     * Returns the 7 hex digits of pi starting at position n.
+     * @param n - position of pi, 1 being the first hex digit after the point
+     * @return the 7 digits packed in base 16
+     */
+    public int getBlock(long n) {
+        long d = n - 1;
+        double x = 4 * series(1, d) - 2 * series(4, d) - series(5, d) - series(6, d);
+        x = x - Math.floor(x);
+        return (int) (x * BLOCK_SCALE);
+    }
+
+    /**
+     * The fractional part of the sum over k of 16^(d-k) / (8k+j).
+     */
+    private double series(int j, long d) {
+        double sum = 0;
+        // Terms with a non-negative power of 16, where only the remainder mod 8k+j matters
+        for (long k = 0; k <= d; k++) {
+            long m = 8 * k + j;
+            mod.setModulus(m);
+            sum += (double) mod.pow(16, d - k) / m;
+            sum -= Math.floor(sum);
+        }
+        // The tail, until its terms are too small to change a double
+        double power = 1.0 / 16;
+        for (long k = d + 1; power / (8 * k + j) > 1e-17; k++) {
+            sum += power / (8 * k + j);
+            power /= 16;
+        }
+        return sum - Math.floor(sum);
+    }
+}
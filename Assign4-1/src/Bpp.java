@@ -4,150 +4,191 @@
  * @author feltocraig
  */
 
-public class Bpp {
+public class Bpp implements PiEngine {
 
 //    private static int NUM;
-
-    public Bpp() {
-    }
+    // 9 digits come out of getDecimal; 8 are kept and the 9th is the guard
+    public static final int DIGITS_PER_TASK = 8;
+
+    private PrimeSieve primes;
+    private ModMath mod = new ModMath();    // arithmetic mod av, reset for every prime
+    // a^vmax and vmax for the primes whose square is at most 2N, the only ones with vmax above 1. They are sized for
+    // the whole sieve, kept between calls and only raised or lowered as N moves, so a block needs no logarithms and
+    // allocates nothing
+    private long[] powers;
+    private int[] exponents;
+    private int smallPrimes = 0;
 
     /**
-     * Returns the nth digit of pi followed by the next 8 numbers
-     * @param n - nth number of pi to return
-     * @return returns an integer value containing 8 digits after n
+     * @param primes shared sieve holding every prime the largest requested position will need
      */
-    public int getDecimal(long n) {
-        long av, a, vmax, N, num, den, k, kq, kq2, t, v, s, i;
-        double sum;
-
-        N = (long) ((n + 20) * Math.log(10) / Math.log(2));
-
-        sum = 0;
+    public Bpp(PrimeSieve primes) {
+        this.primes = primes;
+        int count = 0;
+        while (count < primes.size() && (long) primes.get(count) * primes.get(count) <= primes.getLimit()) {
+            count++;
+        }
+        this.powers = new long[count];
+        this.exponents = new int[count];
+    }
 
-        for (a = 3; a <= (2 * N); a = nextPrime(a)) {
+    public int getRadix() {
+        return 10;
+    }
 
-            vmax = (long) (Math.log(2 * N) / Math.log(a));
-            av = 1;
-            for (i = 0; i < vmax; i++)
-                av = av * a;
+    public int getDigitsPerTask() {
+        return DIGITS_PER_TASK;
+    }
 
-            s = 0;
-            num = 1;
-            den = 1;
-            v = 0;
-            kq = 1;
-            kq2 = 1;
+    public int getBlock(long n) {
+        return getDecimal(n);
+    }
 
-            for (k = 1; k <= N; k++) {
+    /**
+     * Whether BppVector can run here: the jdk.incubator.vector module has to be loaded, with --add-modules, and the
+     * machine has to have vectors of more than one double.
+     */
+    public static boolean vectorSupported() {
+        try {
+            return BppVector.lanes() > 1;
+        }
+        catch (LinkageError e) {
+            return false;
+        }
+    }
 
-                t = k;
-                if (kq >= a) {
-                    do {
-                        t = t / a;
-                        v--;
-                    } while ((t % a) == 0);
-                    kq = 0;
-                }
-                kq++;
-                num = mulMod(num, t, av);
-
-                t = (2 * k - 1);
-                if (kq2 >= a) {
-                    if (kq2 == a) {
-                        do {
-                            t = t / a;
-                            v++;
-                        } while ((t % a) == 0);
-                    }
-                    kq2 -= a;
-                }
-                den = mulMod(den, t, av);
-                kq2 += 2;
-
-                if (v > 0) {
-                    t = modInverse(den, av);
-                    t = mulMod(t, num, av);
-                    t = mulMod(t, k, av);
-                    for (i = v; i < vmax; i++)
-                        t = mulMod(t, a, av);
-                    s += t;
-                    if (s >= av)
-                        s -= av;
-                }
+    // N terms for each of the roughly 2N / ln(2N) primes up to 2N
+    public double estimateCost(long n) {
+        double terms = termsFor(n);
+        return terms * 2 * terms / Math.log(2 * terms);
+    }
 
-            }
+    /**
+     * The number of terms of the series needed to get 9 digits right at position n
+     * @param n - position of pi
+     * @return N, the primes used go up to 2N
+     */
+    public static long termsFor(long n) {
+        return (long) ((n + 20) * Math.log(10) / Math.log(2));
+    }
 
-            t = powMod(10, n - 1, av);
-            s = mulMod(s, t, av);
-            sum = (sum + (double) s / (double) av) % 1;
+    /**
+     * Returns the nth digit of pi followed by the next 8 numbers. The last of the nine digits is the least reliable
+     * since it absorbs the rounding error of the sum, so callers keep the first 8 and use the 9th as a guard digit.
+     * @param n - nth number of pi to return
+     * @return returns an integer value containing the 9 digits starting at n
+     */
+    public int getDecimal(long n) {
+        long N = termsFor(n);
+        if (2 * N > primes.getLimit()) {
+            throw new IllegalArgumentException("Prime sieve is too small for position " + n);
         }
-        return (int) (sum * 1e1); // 1e9 is 9 decimal places
-    }
 
-    private long mulMod(long a, long b, long m) {
-        return (long) (a * b) % m;
-    }
+        double sum = 0;
+        raisePowers(2 * N);
 
-    private long modInverse(long a, long n) {
-        long i = n, v = 0, d = 1;
-        while (a > 0) {
-            long t = i / a, x = a;
-            a = i % x;
-            i = x;
-            x = d;
-            d = v - t * x;
-            v = x;
+        // Index 0 of the sieve is 2, which the algorithm skips
+        for (int p = 1; p < primes.size() && primes.get(p) <= 2 * N; p++) {
+            sum = (sum + primeFraction(p, N, n)) % 1;
         }
-        v %= n;
-        if (v < 0)
-            v = (v + n) % n;
-        return v;
+        return (int) (sum * 1e9); // 1e9 is 9 decimal places
     }
 
-    private long powMod(long a, long b, long m) {
-        long tempo;
-        if (b == 0)
-            tempo = 1;
-        else if (b == 1)
-            tempo = a;
-
-        else {
-            long temp = powMod(a, b / 2, m);
-            if (b % 2 == 0)
-                tempo = (temp * temp) % m;
-            else
-                tempo = ((temp * temp) % m) * a % m;
+    /**
+     * Brings the cached powers up to date for a new 2N: vmax is the largest power of a that is at most 2N. Positions
+     * mostly arrive in increasing order, so usually a few primes gain a power and nothing else changes.
+     * @param twoN - 2N for the next block
+     * @return how many of the sieve's primes, from index 0, have a square at most 2N
+     */
+    protected int raisePowers(long twoN) {
+        int count = 0;
+        while (count < primes.size() && (long) primes.get(count) * primes.get(count) <= twoN) {
+            count++;
+        }
+        for (int p = 0; p < count; p++) {
+            long a = primes.get(p);
+            if (p >= smallPrimes) {
+                powers[p] = a;
+                exponents[p] = 1;
+            }
+            while (powers[p] > twoN / a) {
+                powers[p] /= a;
+                exponents[p]--;
+            }
+            while (powers[p] <= twoN / a) {
+                powers[p] *= a;
+                exponents[p]++;
+            }
         }
-        return tempo;
+        smallPrimes = count;
+        return count;
     }
 
-    private boolean isPrime(long n) {
-        if (n == 2 || n == 3)
-            return true;
-        if (n % 2 == 0 || n % 3 == 0 || n < 2)
-            return false;
+    /**
+     * The part of the series that comes from one prime: the sum of its N terms mod a^vmax, shifted to position n and
+     * divided by a^vmax, so only its fractional digits matter. raisePowers(2 * N) has to be called first.
+     * @param p - index in the sieve of an odd prime up to 2N
+     * @param N - number of terms, from termsFor(n)
+     * @param n - position of pi
+     * @return a fraction in [0, 1)
+     */
+    protected double primeFraction(int p, long N, long n) {
+        long a, av, vmax, num, den, k, kq, kq2, t, v, s, i;
+
+        a = primes.get(p);
+        vmax = p < smallPrimes ? exponents[p] : 1;
+        av = p < smallPrimes ? powers[p] : a;
+        mod.setModulus(av);
+
+        s = 0;
+        num = 1;
+        den = 1;
+        v = 0;
+        kq = 1;
+        kq2 = 1;
+
+        for (k = 1; k <= N; k++) {
+
+            t = k;
+            if (kq >= a) {
+                do {
+                    t = t / a;
+                    v--;
+                } while ((t % a) == 0);
+                kq = 0;
+            }
+            kq++;
+            num = mod.mul(num, t);
 
-        long sqrt = (long) Math.sqrt(n) + 1;
+            t = (2 * k - 1);
+            if (kq2 >= a) {
+                if (kq2 == a) {
+                    do {
+                        t = t / a;
+                        v++;
+                    } while ((t % a) == 0);
+                }
+                kq2 -= a;
+            }
+            den = mod.mul(den, t);
+            kq2 += 2;
+
+            if (v > 0) {
+                t = ModMath.inverse(den, av);
+                t = mod.mul(t, num);
+                t = mod.mul(t, k);
+                for (i = v; i < vmax; i++)
+                    t = mod.mul(t, a);
+                s += t;
+                if (s >= av)
+                    s -= av;
+            }
 
-        for (long i = 6; i <= sqrt; i += 6) {
-            if (n % (i - 1) == 0)
-                return false;
-            else if (n % (i + 1) == 0)
-                return false;
         }
-        return true;
-    }
 
-    private long nextPrime(long n) {
-        if (n < 2)
-            return 2;
-        if (n == 9223372036854775783L) {
-            System.err.println("Next prime number exceeds Long.MAX_VALUE: " + Long.MAX_VALUE);
-            return -1;
-        }
-        for (long i = n + 1;; i++)
-            if (isPrime(i))
-                return i;
+        t = mod.pow(10, n - 1);
+        s = mod.mul(s, t);
+        return (double) s / (double) av;
     }
 
     /**
@@ -0,0 +1,152 @@
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Bpp with the primes above sqrt(2N) run several at a time, one per lane of a vector, with the incubator Vector API.
+ * Those are nearly all of the primes. Each of them divides k and 2k - 1 at most once, so every lane steps through k in
+ * lock step with the others and only masks differ between lanes. The few small primes go through Bpp's scalar loop.
+ *
+ * Residues are kept in doubles, exact below 2^53, so the lanes can multiply mod a with one multiply and two FMAs: the
+ * quotient is rounded from x * y / a, and x * y - q * a comes out of the FMA exactly. That needs every product below
+ * 2^53, so 2N below 2^26, which every position below about ten million stays under; past that the scalar Bpp is used.
+ * The residues are left signed, anywhere from about -a / 2 to a / 2, which saves correcting them after every
+ * multiplication. Together that keeps the loop small enough for C2 to compile all of it into vector registers, so no
+ * vector is ever boxed and a block allocates nothing.
+ *
+ * Where Bpp takes the inverse of the denominator for every term, the lanes keep the sum over the running denominator
+ * and divide once at the end: S(k) = S(k - 1) * (2k - 1) + k * num. The sum per prime comes out the same, so the digits
+ * are identical to Bpp's.
+ *
+ * The class needs the jdk.incubator.vector module; Bpp.vectorSupported() checks for it before one is created.
+ *
+ * @author Benjamin Taylor
+ */
+public class BppVector extends Bpp {
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+    // Adding and subtracting 1.5 * 2^52 rounds a double below 2^51 to the nearest integer
+    private static final double ROUND = 0x1.8p52;
+    // Every product in the loop is a residue below a times a factor up to 2N, so 2N below 2^26 keeps them under 2^52
+    private static final long LARGEST_PRIME = 1L << 26;
+
+    private PrimeSieve primes;
+    private ModMath mod = new ModMath();
+    // One vector's worth of primes, and their sums and denominators, for moving between lanes and longs
+    private final double[] lanePrimes = new double[SPECIES.length()];
+    private final double[] laneInverses = new double[SPECIES.length()];
+    private final double[] laneSums = new double[SPECIES.length()];
+    private final double[] laneDens = new double[SPECIES.length()];
+
+    /**
+     * @param primes shared sieve holding every prime the largest requested position will need
+     */
+    public BppVector(PrimeSieve primes) {
+        super(primes);
+        this.primes = primes;
+    }
+
+    // How many primes run at once on this machine
+    public static int lanes() {
+        return SPECIES.length();
+    }
+
+    public int getDecimal(long n) {
+        long N = termsFor(n);
+        if (2 * N > primes.getLimit()) {
+            throw new IllegalArgumentException("Prime sieve is too small for position " + n);
+        }
+        if (2 * N >= LARGEST_PRIME) {
+            return super.getDecimal(n);
+        }
+
+        double sum = 0;
+
+        // The small primes, whose powers divide the terms more than once, go one at a time
+        int small = raisePowers(2 * N);
+        int p = 1;
+        for (; p < small; p++) {
+            sum = (sum + primeFraction(p, N, n)) % 1;
+        }
+
+        // The rest a vector at a time, in order, so the sum is added up exactly as Bpp adds it
+        int end = p;
+        while (end < primes.size() && primes.get(end) <= 2 * N) {
+            end++;
+        }
+        for (; p < end; p += SPECIES.length()) {
+            int count = Math.min(SPECIES.length(), end - p);
+            for (int lane = 0; lane < SPECIES.length(); lane++) {
+                // Spare lanes repeat the last prime and are ignored
+                lanePrimes[lane] = primes.get(p + Math.min(lane, count - 1));
+                laneInverses[lane] = 1.0 / lanePrimes[lane];
+            }
+            sumLanes(N);
+            for (int lane = 0; lane < count; lane++) {
+                long a = (long) lanePrimes[lane];
+                mod.setModulus(a);
+                long s = mod.mul(Math.floorMod((long) laneSums[lane], a),
+                        ModMath.inverse(Math.floorMod((long) laneDens[lane], a), a));
+                s = mod.mul(s, mod.pow(10, n - 1));
+                sum = (sum + (double) s / (double) a) % 1;
+            }
+        }
+        return (int) (sum * 1e9); // 1e9 is 9 decimal places
+    }
+
+    /**
+     * Runs the N terms for the primes in lanePrimes, leaving each lane's sum over its denominator in laneSums and the
+     * denominator, with the factors of a taken out, in laneDens. Both are mod a.
+     */
+    private void sumLanes(long N) {
+        DoubleVector a = DoubleVector.fromArray(SPECIES, lanePrimes, 0);
+        DoubleVector aInverse = DoubleVector.fromArray(SPECIES, laneInverses, 0);
+        DoubleVector one = DoubleVector.broadcast(SPECIES, 1);
+        DoubleVector two = DoubleVector.broadcast(SPECIES, 2);
+        DoubleVector zero = DoubleVector.broadcast(SPECIES, 0);
+        DoubleVector minusA = a.neg();
+        DoubleVector round = DoubleVector.broadcast(SPECIES, ROUND);
+        DoubleVector num = one, den = one, s = zero;
+        // k mod a and (2k - 1) mod a, counted up instead of divided
+        DoubleVector kq = one, kq2 = one;
+        // k / a and (2k - 1) / a as of the last time a divided them. The power of a left over in the term, v, is the
+        // number of odd multiples of a up to 2k - 1 less the number of multiples up to k, so v > 0 exactly when
+        // oddDivided >= 2 * kDivided
+        DoubleVector kDivided = zero, oddDivided = DoubleVector.broadcast(SPECIES, -1);
+
+        // Adding to some lanes is written as adding a blend with zero, which JDK 17 compiles better than a masked add.
+        // num, den and s are signed residues, only brought into [0, a) once the loop is done
+        for (long k = 1; k <= N; k++) {
+            DoubleVector kv = DoubleVector.broadcast(SPECIES, (double) k);
+
+            VectorMask<Double> divides = kq.compare(VectorOperators.EQ, a);
+            kDivided = kDivided.add(zero.blend(one, divides));
+            kq = kq.add(one).blend(one, divides);
+            num = mulMod(num, kv.blend(kDivided, divides), minusA, aInverse, round);
+
+            VectorMask<Double> dividesOdd = kq2.compare(VectorOperators.EQ, a);
+            oddDivided = oddDivided.add(zero.blend(two, dividesOdd));
+            kq2 = kq2.sub(zero.blend(a, kq2.compare(VectorOperators.GE, a))).add(two);
+            DoubleVector t = DoubleVector.broadcast(SPECIES, (double) (2 * k - 1)).blend(oddDivided, dividesOdd);
+            den = mulMod(den, t, minusA, aInverse, round);
+
+            VectorMask<Double> live = oddDivided.compare(VectorOperators.GE, kDivided.add(kDivided));
+            s = mulMod(s, t, minusA, aInverse, round).add(zero.blend(mulMod(num, kv, minusA, aInverse, round), live));
+        }
+        s.intoArray(laneSums, 0);
+        den.intoArray(laneDens, 0);
+    }
+
+    /**
+     * x * y mod a in every lane, as a signed residue: the result is congruent to x * y and at most a little over a / 2
+     * from 0, since the quotient is rounded to the nearest integer. x * y has to be exact in a double, below 2^53 in
+     * size, and then the FMA gives x * y - q * a exactly. Sums of two residues can be fed back in without reducing them
+     * first, since they are still below a in size.
+     */
+    private static DoubleVector mulMod(DoubleVector x, DoubleVector y, DoubleVector minusA, DoubleVector aInverse,
+                                       DoubleVector round) {
+        DoubleVector product = x.mul(y);
+        DoubleVector q = product.fma(aInverse, round).sub(round);
+        return q.fma(minusA, product);
+    }
+}
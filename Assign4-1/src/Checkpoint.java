@@ -0,0 +1,149 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An append only record of every block computed so far, kept in a memory mapped file so a long run that gets killed
+ * can pick up where it left off. The file is a small header (magic, radix, digits per block and the -digits it was
+ * written for) followed by one 8 byte slot per block, each holding the block's position and its digits plus one, so an
+ * empty slot reads as 0. Threads claim slots with an atomic counter and write their record with a single 8 byte put
+ * through their own view of the mapping, so recording never locks and a crash can at worst leave an empty slot. The
+ * mapped pages are forced to disk in batches from a background thread rather than after every block.
+ *
+ * @author Benjamin Taylor
+ */
+public class Checkpoint implements Runnable {
+    private static final long MAGIC = 0x5049434b50543031L;     // "PICKPT01"
+    private static final int HEADER_SIZE = 32;
+    private static final int RECORD_SIZE = 8;
+    private static final long SYNC_MILLIS = 1000;
+
+    private final RandomAccessFile file;
+    private final MappedByteBuffer buffer;
+    // Each recording thread puts through its own duplicate, since a buffer isn't guaranteed to be safe to share
+    private final ThreadLocal<ByteBuffer> views;
+    private final int capacity;
+    private final AtomicInteger nextSlot = new AtomicInteger();
+    private volatile boolean closed = false;
+
+    /**
+     * Opens the checkpoint file, creating it if needed. Every block in it is put back into the result table, and the
+     * records are packed to the front of the file so the slots left by a crash are reused. Records that don't start a
+     * block or don't hold a block's worth of digits can only come from a damaged file, and are dropped. A file that
+     * isn't a checkpoint, or was written by a different engine or for a different -digits, is refused before anything
+     * is written to it, so a short run can't wipe out the checkpoint of a long one.
+     *
+     * @param path the checkpoint file
+     * @param results the result table to fill with the blocks already computed
+     * @param radix the base of the engine's digits
+     * @param digitsPerTask the distance between the first positions of two neighbouring blocks
+     * @param digits the -digits of this run
+     * @throws IOException if the file can't be read, grown or mapped, or belongs to some other run
+     */
+    public Checkpoint(String path, ResultTable results, int radix, int digitsPerTask, int digits) throws IOException {
+        this.file = new RandomAccessFile(path, "rw");
+        this.capacity = results.capacity();
+        long oldLength = file.length();
+        if (oldLength > 0) {
+            try {
+                checkHeader(path, radix, digitsPerTask, digits);
+            }
+            catch (IOException e) {
+                file.close();
+                throw e;
+            }
+        }
+        int oldSlots = oldLength > 0 ? (int) ((oldLength - HEADER_SIZE) / RECORD_SIZE) : 0;
+        file.setLength(Math.max(oldLength, HEADER_SIZE + (long) capacity * RECORD_SIZE));
+        this.buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, file.length());
+        this.views = ThreadLocal.withInitial(buffer::duplicate);
+
+        long blockSize = (long) Math.pow(radix, digitsPerTask + 1);
+        int kept = 0;
+        for (int slot = 0; slot < oldSlots; slot++) {
+            long record = buffer.getLong(offset(slot));
+            int position = (int) (record >>> 32);
+            int value = (int) record;
+            if (value > 0 && value <= blockSize && position >= 1 && position <= (long) capacity * digitsPerTask
+                    && (position - 1) % digitsPerTask == 0 && results.get(position) == -1) {
+                results.restore(position, value - 1);
+                buffer.putLong(offset(kept++), record);
+            }
+        }
+        // Clear everything after the packed records so stale slots can't be read back in later; the header matched,
+        // so every slot out there belongs to this run's blocks
+        for (long at = offset(kept); at + RECORD_SIZE <= buffer.capacity(); at += RECORD_SIZE) {
+            buffer.putLong((int) at, 0);
+        }
+        buffer.putLong(0, MAGIC);
+        buffer.putInt(8, radix);
+        buffer.putInt(12, digitsPerTask);
+        buffer.putInt(16, digits);
+        buffer.force();
+        nextSlot.set(kept);
+    }
+
+    // Reads the header of an existing file and refuses it unless it was written for exactly this run
+    private void checkHeader(String path, int radix, int digitsPerTask, int digits) throws IOException {
+        if (file.length() < HEADER_SIZE || file.readLong() != MAGIC) {
+            throw new IOException(path + " is not a checkpoint file");
+        }
+        int oldRadix = file.readInt();
+        int oldDigitsPerTask = file.readInt();
+        int oldDigits = file.readInt();
+        if (oldRadix != radix || oldDigitsPerTask != digitsPerTask) {
+            throw new IOException(path + " is the checkpoint of a different engine; remove it to start over");
+        }
+        if (oldDigits != digits) {
+            throw new IOException(String.format("%s is the checkpoint of a %d digit run, not %d; remove it to start"
+                    + " over", path, oldDigits, digits));
+        }
+    }
+
+    // How many blocks were read back in when the file was opened
+    public int restored() {
+        return nextSlot.get();
+    }
+
+    /**
+     * Records a finished block. Every block is recorded at most once per run and the file has a slot for each one.
+     *
+     * @param position the position of the first digit in the block
+     * @param block the digits of the block
+     */
+    public void record(int position, int block) {
+        int slot = nextSlot.getAndIncrement();
+        if (slot < capacity) {
+            views.get().putLong(offset(slot), ((long) position << 32) | (block + 1));
+        }
+    }
+
+    // Force the records to disk once a second until closed
+    public void run() {
+        while (!closed) {
+            try {
+                Thread.sleep(SYNC_MILLIS);
+            }
+            catch (InterruptedException e) {
+                return;
+            }
+            buffer.force();
+        }
+    }
+
+    /**
+     * Forces the last records to disk and closes the file.
+     */
+    public void close() throws IOException {
+        closed = true;
+        buffer.force();
+        file.close();
+    }
+
+    private static int offset(int slot) {
+        return HEADER_SIZE + slot * RECORD_SIZE;
+    }
+}
@@ -1,5 +1,3 @@
-import java.util.Optional;
-
 /**
  * This is the class giving the threads what to do, it also contains teh shared resources
  *
@@ -9,33 +7,35 @@ public class ComputePiDigit implements Runnable {
     private String threadName; // used for debugging
     private TaskQueue taskQueue;
     private ResultTable results;
-    private Bpp bpp;
+    private PiEngine engine;
+    private WorkerStats.Worker worker;
 
     /**
-     * Pass in shared resources and save as private variables, the name was for debugging purposes, creates a single bpp
-     * object for each thread
+     * Pass in shared resources and save as private variables, the name was for debugging purposes. Each thread gets its
+     * own engine object since the engines keep scratch state
      * @param taskQueue shared TaskQueue
      * @param results shared results Table
+     * @param engine this thread's engine for computing blocks of digits
      * @param name thread name which was used for debugging
+     * @param worker where this thread's busy time is counted
      */
-    public ComputePiDigit(TaskQueue taskQueue, ResultTable results, String name) {
+    public ComputePiDigit(TaskQueue taskQueue, ResultTable results, PiEngine engine, String name,
+                          WorkerStats.Worker worker) {
         this.results = results;
         this.taskQueue = taskQueue;
         this.threadName = name;
-        this.bpp = new Bpp();
+        this.engine = engine;
+        this.worker = worker;
     }
 
-    // While the taskQueue does not return an empty Optional continue to grab tasks to compute the digit and place it in the result table
+    // While the taskQueue still has tasks, claim the next chunk, compute the block at each position and place it in the result table.
+    // Once any worker has failed the run is over, so no more chunks are claimed
     public void run() {
-        boolean done = false;
-        while (!done) {
-            Optional<Integer> digit = taskQueue.dequeue();
-            if (digit.isPresent()) {
-                int result = bpp.getDecimal(digit.get());
-                results.put(digit.get(), result);
-            }
-            else {
-                done = true;
+        long range;
+        while (results.getFailure() == null && (range = taskQueue.claim()) >= 0) {
+            for (int i = TaskQueue.start(range), end = TaskQueue.end(range); i < end; i++) {
+                int position = taskQueue.get(i);
+                results.put(position, worker.compute(engine, position));
             }
         }
     }
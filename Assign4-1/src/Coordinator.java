@@ -0,0 +1,165 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Hands the blocks of pi out to worker processes over sockets instead of to threads in this process. Each connection
+ * is one worker thread: it is sent the engine to use, then leases of positions taken from the task queue, and it sends
+ * back each block as soon as it is computed. A connection only ever holds one lease, so when a worker dies, goes quiet
+ * for longer than the lease timeout, or sends back something that can't be a block, the positions it hadn't sent back
+ * yet are handed to the next connection that asks for work.
+ *
+ * The protocol is plain data streams:
+ *   coordinator to worker on connect: engine name (UTF), last position that will be asked for (int)
+ *   coordinator to worker per lease: number of positions n (int), then the n positions (int); n = 0 means done
+ *   worker to coordinator per block: position (int), block (int)
+ *
+ * @author Benjamin Taylor
+ */
+public class Coordinator implements Runnable {
+    // How often a connection with nothing to hand out looks again for leases given up by dead workers
+    private static final long IDLE_MILLIS = 100;
+
+    private ServerSocket server;
+    private TaskQueue taskQueue;
+    private ResultTable results;
+    private String engineName;
+    private long blockSize;         // radix^(digitsPerTask + 1), one more than the largest block
+    private int lastPosition;
+    private int leaseTimeoutMillis;
+    private final ConcurrentLinkedQueue<Integer> reissued = new ConcurrentLinkedQueue<>();
+
+    /**
+     * @param port port to listen on for workers
+     * @param taskQueue the positions to hand out
+     * @param results where the workers' blocks are stored
+     * @param engineName the engine the workers should use
+     * @param radix the base of the engine's digits
+     * @param digitsPerTask how many digits of each block are kept; the block has one more
+     * @param lastPosition the highest position any block starts at, so workers can size their tables
+     * @param leaseTimeoutMillis how long a worker can take on one block before its lease is given to someone else,
+     *                           0 to wait as long as its connection lasts
+     */
+    public Coordinator(int port, TaskQueue taskQueue, ResultTable results, String engineName, int radix,
+                       int digitsPerTask, int lastPosition, int leaseTimeoutMillis) throws IOException {
+        this.server = new ServerSocket(port);
+        this.taskQueue = taskQueue;
+        this.results = results;
+        this.engineName = engineName;
+        this.blockSize = (long) Math.pow(radix, digitsPerTask + 1);
+        this.lastPosition = lastPosition;
+        this.leaseTimeoutMillis = leaseTimeoutMillis;
+    }
+
+    // The port actually listened on, for when port 0 was asked for
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    // Accept workers until closed, serving each connection from its own thread
+    public void run() {
+        try {
+            while (true) {
+                Socket socket = server.accept();
+                Thread serve = new Thread(() -> serve(socket));
+                serve.setDaemon(true);
+                serve.start();
+            }
+        }
+        catch (SocketException e) {
+            // closed once every block is in
+        }
+        catch (IOException e) {
+            System.err.printf("Coordinator stopped accepting workers: %s\n", e.getMessage());
+        }
+    }
+
+    // Stop accepting workers
+    public void close() throws IOException {
+        server.close();
+    }
+
+    /**
+     * Feeds one worker connection leases until every block is finished. If the connection fails, whatever is left of
+     * its current lease goes back for another worker.
+     */
+    private void serve(Socket socket) {
+        int[] lease = new int[0];
+        int received = 0;
+        try (Socket s = socket) {
+            s.setSoTimeout(leaseTimeoutMillis);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+            out.writeUTF(engineName);
+            out.writeInt(lastPosition);
+            while ((lease = nextLease()).length > 0) {
+                received = 0;
+                out.writeInt(lease.length);
+                for (int position : lease) {
+                    out.writeInt(position);
+                }
+                out.flush();
+                for (; received < lease.length; received++) {
+                    int position = in.readInt();
+                    int block = in.readInt();
+                    if (position != lease[received]) {
+                        throw new IOException("worker sent position " + position + ", expected " + lease[received]);
+                    }
+                    if (block < 0 || block >= blockSize) {
+                        throw new IOException("worker sent " + block + " as the block at position " + position);
+                    }
+                    results.put(position, block);
+                }
+            }
+            out.writeInt(0);
+            out.flush();
+        }
+        catch (IOException e) {
+            for (int i = received; i < lease.length; i++) {
+                reissued.add(lease[i]);
+            }
+            if (received < lease.length) {
+                System.err.printf("Lost worker %s, handing %d blocks to the others\n", socket.getRemoteSocketAddress(),
+                        lease.length - received);
+            }
+        }
+    }
+
+    /**
+     * Takes the next lease: positions given up by a dead worker first, then the next chunk from the queue. When both
+     * are empty but blocks are still out with other workers, waits in case one of them dies.
+     *
+     * @return the positions to compute, empty once every block is finished
+     */
+    private int[] nextLease() {
+        while (true) {
+            Integer lost = reissued.poll();
+            if (lost != null) {
+                return new int[]{lost};
+            }
+            long range = taskQueue.claim();
+            if (range >= 0) {
+                int[] lease = new int[TaskQueue.end(range) - TaskQueue.start(range)];
+                for (int i = 0; i < lease.length; i++) {
+                    lease[i] = taskQueue.get(TaskQueue.start(range) + i);
+                }
+                return lease;
+            }
+            if (results.size() == results.capacity()) {
+                return new int[0];
+            }
+            try {
+                Thread.sleep(IDLE_MILLIS);
+            }
+            catch (InterruptedException e) {
+                return new int[0];
+            }
+        }
+    }
+}
@@ -0,0 +1,103 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts how long blocks take in buckets that grow with the value, the way HdrHistogram does: each power of two is
+ * split into SUB_BUCKETS equal steps, so every bucket is within 1 / SUB_BUCKETS of its value from a microsecond up to
+ * hours, in a fixed array of counters. Any thread can record into it without a lock.
+ *
+ * @author Benjamin Taylor
+ */
+public class LatencyHistogram {
+    private static final int SUB_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    // Microseconds up to 2^40, about 12 days
+    private static final int MAX_EXPONENT = 40;
+
+    // Row 0 holds the values below SUB_BUCKETS one each, row r above that the values with highest bit r + SUB_BITS - 1
+    private final AtomicLongArray counts = new AtomicLongArray((MAX_EXPONENT - SUB_BITS + 2) * SUB_BUCKETS);
+    private final AtomicLongArray totals = new AtomicLongArray(2);    // count and sum of nanoseconds
+
+    /**
+     * Counts one block.
+     *
+     * @param nanos how long it took
+     */
+    public void record(long nanos) {
+        counts.incrementAndGet(bucket(Math.max(0, nanos / 1000)));
+        totals.incrementAndGet(0);
+        totals.addAndGet(1, nanos);
+    }
+
+    // How many blocks were counted
+    public long count() {
+        return totals.get(0);
+    }
+
+    // Total time of the counted blocks, in seconds
+    public double sumSeconds() {
+        return totals.get(1) / 1e9;
+    }
+
+    // How many buckets there are
+    public int buckets() {
+        return counts.length();
+    }
+
+    // How many values fell in a bucket
+    public long countAt(int bucket) {
+        return counts.get(bucket);
+    }
+
+    // Whether the bucket is the last one below a power of two, for printing a coarser set of bounds
+    public boolean endsRow(int bucket) {
+        return bucket % SUB_BUCKETS == SUB_BUCKETS - 1;
+    }
+
+    /**
+     * @return the largest value, in seconds, that lands in the bucket
+     */
+    public double upperBoundSeconds(int bucket) {
+        int row = bucket / SUB_BUCKETS;
+        if (row == 0) {
+            return bucket / 1e6;
+        }
+        int shift = row - 1;
+        long low = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return (low + (1L << shift) - 1) / 1e6;
+    }
+
+    /**
+     * @param fraction which quantile, e.g. 0.99
+     * @return an upper bound, in seconds, for that quantile of the counted values, or 0 if nothing was counted
+     */
+    public double quantileSeconds(double fraction) {
+        long total = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            total += counts.get(i);
+        }
+        long wanted = (long) Math.ceil(fraction * total);
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= wanted && seen > 0) {
+                return upperBoundSeconds(i);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * The bucket of a value: its highest bit picks the row and the SUB_BITS bits below that pick the step.
+     */
+    private int bucket(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        if (exponent > MAX_EXPONENT) {
+            return counts.length() - 1;
+        }
+        int step = (int) (micros >>> (exponent - SUB_BITS)) - SUB_BUCKETS;
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + step;
+    }
+}
@@ -0,0 +1,191 @@
+/**
+ * Modular arithmetic on longs for one modulus at a time, without the overflow of (a * b) % m. While the modulus is
+ * below 2^31 the operands are reduced below it and multiplied directly, since the product then fits in a long. Bpp's
+ * prime powers stay below 2N, and PrimeSieve keeps 2N below 2^31, so Bpp and BppVector always take this direct path.
+ * Larger odd moduli, which the hex engine's 8k+j reaches at high positions, switch to Montgomery multiplication, which
+ * finds the full 128 bit product with Math.multiplyHigh and reduces it without any division. Large even moduli fall
+ * back to a slower shift and add multiplication.
+ *
+ * An instance is reused for every modulus a thread needs, so setting a new one doesn't allocate.
+ *
+ * @author Benjamin Taylor
+ */
+public class ModMath {
+    private static final long SMALL_MODULUS = 1L << 31;
+
+    private long m;
+    private boolean small;      // products of two reduced operands fit in a long
+    private boolean even;       // too big for the direct path and Montgomery can't be used
+    private long directLimit;   // 2^31 while the modulus is small, otherwise 0 so the direct path is never taken
+    private long mInverse;      // -m^-1 mod 2^64, used by the Montgomery reduction
+    private long r2;            // 2^128 mod m, converts a number into Montgomery form
+
+    /**
+     * Switches to a new modulus. A modulus of 1 is allowed and makes every result 0, which BbpHex relies on for its
+     * first term, where 8k+j is 1.
+     *
+     * @param m the modulus, in [1, 2^63)
+     */
+    public void setModulus(long m) {
+        this.m = m;
+        this.small = m < SMALL_MODULUS;
+        this.directLimit = small ? SMALL_MODULUS : 0;
+        if (small) {
+            return;
+        }
+        this.even = (m & 1) == 0;
+        if (even) {
+            return;
+        }
+
+        // Newton's iteration doubles the correct low bits of the inverse each time: 3, 6, 12, 24, 48, 96
+        long inverse = m;
+        for (int i = 0; i < 5; i++) {
+            inverse *= 2 - m * inverse;
+        }
+        this.mInverse = -inverse;
+
+        // 2^64 mod m, then doubled 64 more times to get 2^128 mod m; m < 2^63 so doubling can't overflow unsigned
+        long r = Long.remainderUnsigned(-m, m);
+        for (int i = 0; i < 64; i++) {
+            r <<= 1;
+            if (Long.compareUnsigned(r, m) >= 0) {
+                r -= m;
+            }
+        }
+        this.r2 = r;
+    }
+
+    public long getModulus() {
+        return m;
+    }
+
+    /**
+     * Multiplies two numbers mod m. Every caller multiplies a previous result by something new, so a is expected to be
+     * reduced already; b may be any non-negative long.
+     *
+     * @return (a * b) mod m for a in [0, m) and b >= 0
+     */
+    public long mul(long a, long b) {
+        // Both operands below 2^31, the case every position below a few hundred million hits
+        if (b < directLimit) {
+            return a * b % m;
+        }
+        if (b >= m) {
+            b %= m;
+        }
+        if (small) {
+            return a * b % m;
+        }
+        if (even) {
+            return shiftAndAdd(a, b);
+        }
+        return montgomery(montgomery(a, b), r2);
+    }
+
+    /**
+     * Raises base to the exp power by repeated squaring, in a loop rather than recursion.
+     *
+     * @return base^exp mod m for non-negative base and exp
+     */
+    public long pow(long base, long exp) {
+        if (base >= m) {
+            base %= m;
+        }
+        if (small) {
+            long result = 1 % m;
+            while (exp > 0) {
+                if ((exp & 1) == 1) {
+                    result = result * base % m;
+                }
+                base = base * base % m;
+                exp >>= 1;
+            }
+            return result;
+        }
+
+        if (even) {
+            long result = 1;
+            while (exp > 0) {
+                if ((exp & 1) == 1) {
+                    result = shiftAndAdd(result, base);
+                }
+                base = shiftAndAdd(base, base);
+                exp >>= 1;
+            }
+            return result;
+        }
+
+        // Stay in Montgomery form for the whole loop and convert back once at the end
+        long result = montgomery(1, r2);
+        base = montgomery(base, r2);
+        while (exp > 0) {
+            if ((exp & 1) == 1) {
+                result = montgomery(result, base);
+            }
+            base = montgomery(base, base);
+            exp >>= 1;
+        }
+        return montgomery(result, 1);
+    }
+
+    /**
+     * Extended Euclid, moved here from Bpp.
+     *
+     * @return the inverse of a mod n, for a coprime to n
+     */
+    public static long inverse(long a, long n) {
+        long i = n, v = 0, d = 1;
+        while (a > 0) {
+            long t = i / a, x = a;
+            a = i % x;
+            i = x;
+            x = d;
+            d = v - t * x;
+            v = x;
+        }
+        v %= n;
+        if (v < 0)
+            v = (v + n) % n;
+        return v;
+    }
+
+    /**
+     * Montgomery reduction of a * b: returns a * b * 2^-64 mod m for a and b below m. Adding q * m, with q chosen so the
+     * low 64 bits cancel, makes the 128 bit sum divisible by 2^64, and the high half is then below 2m.
+     */
+    private long montgomery(long a, long b) {
+        long low = a * b;
+        long high = Math.multiplyHigh(a, b);
+        long q = low * mInverse;
+        // Unsigned high half of q * m; q may have its top bit set, m never does
+        long qmHigh = Math.multiplyHigh(q, m) + ((q >> 63) & m);
+        long t = high + qmHigh + (low != 0 ? 1 : 0);
+        if (Long.compareUnsigned(t, m) >= 0) {
+            t -= m;
+        }
+        return t;
+    }
+
+    /**
+     * Long multiplication in binary: walks the bits of b, doubling a each step. Works for any m below 2^63 since every
+     * intermediate value stays below 2m.
+     */
+    private long shiftAndAdd(long a, long b) {
+        long result = 0;
+        while (b > 0) {
+            if ((b & 1) == 1) {
+                result += a;
+                if (result >= m || result < 0) {
+                    result -= m;
+                }
+            }
+            a <<= 1;
+            if (a >= m || a < 0) {
+                a -= m;
+            }
+            b >>= 1;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,36 @@
+/**
+ * A way of computing a block of digits of pi starting at any position, without the digits before it. Each block has
+ * getDigitsPerTask() digits that are kept plus one guard digit after them, which Assign4 checks against the first digit
+ * of the next block.
+ *
+ * @author Benjamin Taylor
+ */
+public interface PiEngine {
+    /**
+     * @return the base the digits are in, 10 or 16
+     */
+    int getRadix();
+
+    /**
+     * @return how many digits of each block are kept, not counting the guard digit
+     */
+    int getDigitsPerTask();
+
+    /**
+     * Computes getDigitsPerTask() + 1 digits of pi after the point, starting at position n (1 is the first digit after
+     * the point), packed into an int with the first digit the most significant.
+     *
+     * @param n position of the first digit of the block
+     * @return the digits of the block, the last one being the guard digit
+     */
+    int getBlock(long n);
+
+    /**
+     * A rough relative cost of computing the block at position n, used to balance the work between threads. Only the
+     * ratios between positions matter.
+     *
+     * @param n position of the first digit of the block
+     * @return the estimated cost
+     */
+    double estimateCost(long n);
+}
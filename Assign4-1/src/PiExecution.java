@@ -0,0 +1,183 @@
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs the blocks of pi on one of several execution modes, so they can be compared without editing the code:
+ *   threads  - one platform thread per processor, each claiming chunks from the task queue until it is empty
+ *   pool     - a fixed pool of platform threads, with every chunk of the task queue submitted as its own task
+ *   forkjoin - a ForkJoin pool splitting the positions in half and stealing the halves
+ *   virtual  - a new virtual thread for every chunk of the task queue
+ * Every mode times its workers in a WorkerStats. Virtual threads need Java 21; on older runtimes that mode falls back
+ * to running each chunk as its own task on a pool of one platform thread per processor, the way virtual threads would
+ * be carried, and says so.
+ *
+ * @author Benjamin Taylor
+ */
+public class PiExecution {
+    public static final String MODES = "threads|pool|forkjoin|virtual";
+
+    private String mode;
+    private int threads;
+    private int[] positions;
+    private TaskQueue taskQueue;
+    private ResultTable results;
+    private Supplier<PiEngine> engines;
+    private WorkerStats stats;
+    private volatile ForkJoinPool forkJoinPool;
+    private final AtomicInteger waiting = new AtomicInteger();    // blocks in chunks submitted but not started
+
+    /**
+     * @param mode one of MODES
+     * @param threads how many platform threads to compute on
+     * @param positions every position to compute, in the order the schedule gives them; used by forkjoin
+     * @param taskQueue the same positions handed out in chunks; used by every other mode
+     * @param results shared results Table
+     * @param engines makes a new engine; every worker needs its own since the engines keep scratch state
+     */
+    public PiExecution(String mode, int threads, int[] positions, TaskQueue taskQueue, ResultTable results,
+                       Supplier<PiEngine> engines) {
+        this.mode = mode;
+        this.threads = threads;
+        this.positions = positions;
+        this.taskQueue = taskQueue;
+        this.results = results;
+        this.engines = engines;
+        this.stats = new WorkerStats();
+    }
+
+    /**
+     * Computes every block and waits for them all. A worker failure is passed to the result table as soon as it is
+     * seen, so nothing keeps waiting for the blocks that worker held.
+     *
+     * @throws ExecutionException if a worker failed, with the first failure as its cause
+     */
+    public void run() throws InterruptedException, ExecutionException {
+        try {
+            runWorkers();
+        }
+        catch (ExecutionException e) {
+            results.fail(e.getCause());
+            throw e;
+        }
+        catch (RuntimeException e) {
+            results.fail(e);
+            throw new ExecutionException(e);
+        }
+    }
+
+    private void runWorkers() throws InterruptedException, ExecutionException {
+        if (mode.equals("threads")) {
+            Thread[] workers = new Thread[threads];
+            for (int i = 0; i < threads; i++) {
+                workers[i] = new Thread(new ComputePiDigit(taskQueue, results, engines.get(), Integer.toString(i),
+                        stats.worker()));
+                workers[i].setUncaughtExceptionHandler((thread, e) -> results.fail(e));
+                workers[i].start();
+            }
+            for (Thread t : workers) {
+                t.join();
+            }
+            if (results.getFailure() != null) {
+                throw new ExecutionException(results.getFailure());
+            }
+        }
+        else if (mode.equals("forkjoin")) {
+            if (positions.length > 0) {
+                ForkJoinPool pool = new ForkJoinPool(threads);
+                forkJoinPool = pool;
+                pool.invoke(new PiTask(positions, 0, positions.length, results, ThreadLocal.withInitial(engines),
+                        stats));
+                pool.shutdown();
+            }
+        }
+        else if (mode.equals("pool")) {
+            ExecutorService pool = Executors.newFixedThreadPool(threads);
+            ThreadLocal<PiEngine> engine = ThreadLocal.withInitial(engines);
+            submitChunks(pool, () -> stats.forThread(), engine::get, false);
+        }
+        else {
+            submitChunks(virtualThreads(), () -> stats.forTask(System.nanoTime()), engines, true);
+        }
+    }
+
+    // How long each worker was busy and idle, so far or during the whole run
+    public WorkerStats getStats() {
+        return stats;
+    }
+
+    /**
+     * How much work is waiting to be started: blocks left in the task queue plus blocks in chunks that were submitted
+     * but haven't started, or for forkjoin the number of ranges waiting in the pool's deques.
+     */
+    public int getQueueDepth() {
+        ForkJoinPool pool = forkJoinPool;
+        if (pool != null) {
+            return (int) Math.min(Integer.MAX_VALUE, pool.getQueuedTaskCount());
+        }
+        return taskQueue.size() + waiting.get();
+    }
+
+    /**
+     * Submits every chunk of the task queue as its own task, in the queue's order, then waits for them and shuts the
+     * executor down.
+     *
+     * @param executor where the chunks run
+     * @param workers gives the worker a chunk is timed as
+     * @param engine gives the engine a chunk computes with
+     * @param perTask whether each chunk is its own worker, finished when the chunk is
+     */
+    private void submitChunks(ExecutorService executor, Supplier<WorkerStats.Worker> workers,
+                              Supplier<PiEngine> engine, boolean perTask) throws InterruptedException, ExecutionException {
+        List<Future<?>> chunks = new ArrayList<>();
+        long range;
+        while ((range = taskQueue.claim()) >= 0) {
+            int start = TaskQueue.start(range);
+            int end = TaskQueue.end(range);
+            WorkerStats.Worker submitted = perTask ? workers.get() : null;
+            waiting.addAndGet(end - start);
+            chunks.add(executor.submit(() -> {
+                waiting.addAndGet(start - end);
+                WorkerStats.Worker worker = perTask ? submitted : workers.get();
+                PiEngine piEngine = engine.get();
+                for (int i = start; i < end; i++) {
+                    int position = taskQueue.get(i);
+                    results.put(position, worker.compute(piEngine, position));
+                }
+                if (perTask) {
+                    worker.finish();
+                }
+            }));
+        }
+        try {
+            for (Future<?> chunk : chunks) {
+                chunk.get();
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * A virtual thread per task executor, looked up by reflection so this still compiles and runs on Java 17.
+     */
+    private ExecutorService virtualThreads() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        }
+        catch (ReflectiveOperationException e) {
+            System.err.printf("Virtual threads need Java 21 (running %s), using %d platform threads\n",
+                    System.getProperty("java.version"), threads);
+            return Executors.newFixedThreadPool(threads);
+        }
+    }
+}
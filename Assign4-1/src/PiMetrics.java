@@ -0,0 +1,249 @@
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Live numbers for a long run, for spotting stalls and slow cores while it is still going: progress, digits per
+ * second over the whole run and over the last interval, how much work is waiting, how long blocks take, each worker's
+ * blocks and busy time, how long since any block finished, and an estimate of the time left.
+ *
+ * A sampler thread updates the rates once an interval and can log every sample as a JSON line. The same numbers can
+ * also be served in the Prometheus text format from a local HTTP endpoint at /metrics. The time left is estimated from
+ * the engine's cost of each block rather than from a block count, since the blocks get slower the further into pi they
+ * are.
+ *
+ * @author Benjamin Taylor
+ */
+public class PiMetrics implements Runnable {
+    private static final long INTERVAL_MILLIS = 1000;
+
+    private ResultTable results;
+    private PiExecution execution;      // null when the blocks are computed by worker processes
+    private TaskQueue taskQueue;
+    private int digitsPerTask;
+    private double[] costs;             // the engine's estimated cost of each block
+    private double totalCost;
+    private double costAtStart;         // blocks already restored from a checkpoint don't count towards the rate
+    private int blocksAtStart;
+    private final long start = System.nanoTime();
+    private PrintStream log;
+    private HttpServer server;
+    private volatile boolean stopped;
+
+    // Updated by the sampler every interval
+    private volatile double recentDigitsPerSecond;
+    private volatile double etaSeconds = -1;
+    private volatile double stalledSeconds;
+
+    /**
+     * @param results the table the blocks go into
+     * @param execution the workers computing the blocks, or null if they are computed elsewhere
+     * @param taskQueue the queue the blocks are handed out from
+     * @param estimator an engine to estimate the cost of each block with
+     * @param digitsPerTask the distance between the first positions of two neighbouring blocks
+     */
+    public PiMetrics(ResultTable results, PiExecution execution, TaskQueue taskQueue, PiEngine estimator,
+                     int digitsPerTask) {
+        this.results = results;
+        this.execution = execution;
+        this.taskQueue = taskQueue;
+        this.digitsPerTask = digitsPerTask;
+        this.costs = new double[results.capacity()];
+        for (int i = 0; i < costs.length; i++) {
+            costs[i] = estimator.estimateCost((long) i * digitsPerTask + 1);
+            totalCost += costs[i];
+        }
+        this.costAtStart = finishedCost();
+        this.blocksAtStart = results.size();
+    }
+
+    /**
+     * Writes every sample as one JSON line.
+     *
+     * @param log where the lines go
+     */
+    public void logTo(PrintStream log) {
+        this.log = log;
+    }
+
+    /**
+     * Serves the metrics in the Prometheus text format at http://localhost:port/metrics until stopped. Only the
+     * loopback address is listened on, so the metrics can't be read from other machines.
+     */
+    public void serve(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/metrics", exchange -> {
+            byte[] body = prometheus().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+    }
+
+    // The port actually served on, for when port 0 was asked for
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    // Stop sampling and serving; the sampler logs one last line first
+    public void stop() {
+        stopped = true;
+        if (server != null) {
+            server.stop(0);
+        }
+    }
+
+    // Sample once an interval until stopped
+    public void run() {
+        int lastBlocks = results.size();
+        long lastTime = System.nanoTime();
+        long lastChange = lastTime;
+        while (!stopped) {
+            try {
+                Thread.sleep(INTERVAL_MILLIS);
+            }
+            catch (InterruptedException e) {
+                stopped = true;
+            }
+            long now = System.nanoTime();
+            int blocks = results.size();
+            recentDigitsPerSecond = (double) (blocks - lastBlocks) * digitsPerTask / ((now - lastTime) / 1e9);
+            if (blocks != lastBlocks) {
+                lastChange = now;
+            }
+            stalledSeconds = blocks < results.capacity() ? (now - lastChange) / 1e9 : 0;
+            double done = finishedCost() - costAtStart;
+            double left = totalCost - costAtStart - done;
+            etaSeconds = done > 0 ? left / (done / ((now - start) / 1e9)) : -1;
+            lastBlocks = blocks;
+            lastTime = now;
+            if (log != null) {
+                log.println(json());
+                log.flush();
+            }
+        }
+    }
+
+    /**
+     * The current sample as one line of JSON.
+     */
+    public String json() {
+        double elapsed = elapsedSeconds();
+        LatencyHistogram latencies = latencies();
+        StringBuilder line = new StringBuilder(256);
+        line.append(String.format(Locale.ROOT, "{\"elapsed_seconds\":%.3f,\"blocks_done\":%d,\"blocks_total\":%d,"
+                        + "\"digits_done\":%d,\"digits_per_second\":%.1f,\"recent_digits_per_second\":%.1f,"
+                        + "\"queue_depth\":%d,\"eta_seconds\":%.1f,\"stalled_seconds\":%.1f",
+                elapsed, results.size(), results.capacity(), (long) results.size() * digitsPerTask,
+                digitsPerSecond(), recentDigitsPerSecond, queueDepth(), etaSeconds, stalledSeconds));
+        if (latencies != null) {
+            line.append(String.format(Locale.ROOT, ",\"block_seconds\":{\"count\":%d,\"p50\":%.6f,\"p90\":%.6f,"
+                            + "\"p99\":%.6f,\"max\":%.6f}", latencies.count(), latencies.quantileSeconds(0.5),
+                    latencies.quantileSeconds(0.9), latencies.quantileSeconds(0.99), latencies.quantileSeconds(1)));
+        }
+        line.append(",\"workers\":[");
+        List<WorkerStats.Worker> workers = workers();
+        for (int i = 0; i < workers.size(); i++) {
+            WorkerStats.Worker worker = workers.get(i);
+            line.append(String.format(Locale.ROOT, "%s{\"worker\":%d,\"blocks\":%d,\"busy_seconds\":%.3f,"
+                            + "\"blocks_per_second\":%.3f}", i == 0 ? "" : ",", i, worker.getBlocks(),
+                    worker.getBusySeconds(), worker.getBlocks() / elapsed));
+        }
+        return line.append("]}").toString();
+    }
+
+    /**
+     * The current sample in the Prometheus text format.
+     */
+    public String prometheus() {
+        StringBuilder text = new StringBuilder(4096);
+        gauge(text, "pi_blocks_done", "Blocks of digits finished", results.size());
+        gauge(text, "pi_blocks_total", "Blocks of digits in the run", results.capacity());
+        gauge(text, "pi_digits_per_second", "Digits per second over the whole run", digitsPerSecond());
+        gauge(text, "pi_recent_digits_per_second", "Digits per second over the last interval", recentDigitsPerSecond);
+        gauge(text, "pi_queue_depth", "Work waiting to be started", queueDepth());
+        gauge(text, "pi_eta_seconds", "Estimated seconds left, -1 until there is an estimate", etaSeconds);
+        gauge(text, "pi_stalled_seconds", "Seconds since any block finished", stalledSeconds);
+
+        List<WorkerStats.Worker> workers = workers();
+        text.append("# HELP pi_worker_blocks_total Blocks computed by each worker\n");
+        text.append("# TYPE pi_worker_blocks_total counter\n");
+        for (int i = 0; i < workers.size(); i++) {
+            text.append(String.format(Locale.ROOT, "pi_worker_blocks_total{worker=\"%d\"} %d\n", i,
+                    workers.get(i).getBlocks()));
+        }
+        text.append("# HELP pi_worker_busy_seconds_total Time each worker spent computing blocks\n");
+        text.append("# TYPE pi_worker_busy_seconds_total counter\n");
+        for (int i = 0; i < workers.size(); i++) {
+            text.append(String.format(Locale.ROOT, "pi_worker_busy_seconds_total{worker=\"%d\"} %.6f\n", i,
+                    workers.get(i).getBusySeconds()));
+        }
+
+        // Cumulative counts at every power of two, which is all the resolution a dashboard needs
+        LatencyHistogram latencies = latencies();
+        if (latencies != null) {
+            text.append("# HELP pi_block_seconds Time to compute one block\n");
+            text.append("# TYPE pi_block_seconds histogram\n");
+            long cumulative = 0;
+            for (int i = 0; i < latencies.buckets(); i++) {
+                cumulative += latencies.countAt(i);
+                if (latencies.endsRow(i)) {
+                    text.append(String.format(Locale.ROOT, "pi_block_seconds_bucket{le=\"%.6f\"} %d\n",
+                            latencies.upperBoundSeconds(i), cumulative));
+                }
+            }
+            text.append(String.format(Locale.ROOT, "pi_block_seconds_bucket{le=\"+Inf\"} %d\n", cumulative));
+            text.append(String.format(Locale.ROOT, "pi_block_seconds_sum %.6f\n", latencies.sumSeconds()));
+            text.append(String.format(Locale.ROOT, "pi_block_seconds_count %d\n", cumulative));
+        }
+        return text.toString();
+    }
+
+    private static void gauge(StringBuilder text, String name, String help, double value) {
+        text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        text.append("# TYPE ").append(name).append(" gauge\n");
+        text.append(String.format(Locale.ROOT, "%s %s\n", name, value == (long) value ? Long.toString((long) value)
+                : String.format(Locale.ROOT, "%.3f", value)));
+    }
+
+    private double elapsedSeconds() {
+        return Math.max(1e-9, (System.nanoTime() - start) / 1e9);
+    }
+
+    private double digitsPerSecond() {
+        return (double) (results.size() - blocksAtStart) * digitsPerTask / elapsedSeconds();
+    }
+
+    private int queueDepth() {
+        return execution != null ? execution.getQueueDepth() : taskQueue.size();
+    }
+
+    private List<WorkerStats.Worker> workers() {
+        return execution != null ? execution.getStats().snapshot() : List.of();
+    }
+
+    private LatencyHistogram latencies() {
+        return execution != null ? execution.getStats().getLatencies() : null;
+    }
+
+    // The estimated cost of every block that is finished
+    private double finishedCost() {
+        double done = 0;
+        for (int i = 0; i < costs.length; i++) {
+            if (results.get(i * digitsPerTask + 1) != -1) {
+                done += costs[i];
+            }
+        }
+        return done;
+    }
+}
@@ -0,0 +1,48 @@
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A range of blocks for the ForkJoin work stealing schedule. The range is split in half until it is a single block;
+ * each thread works through the low half of its range first while the high halves wait in its deque, where idle
+ * threads steal them. The engines keep scratch state, so every pool thread uses its own through a ThreadLocal.
+ *
+ * @author Benjamin Taylor
+ */
+public class PiTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final int[] tasks;
+    private final int start;
+    private final int end;
+    private final ResultTable results;
+    private final ThreadLocal<PiEngine> engines;
+    private final WorkerStats stats;
+
+    /**
+     * @param tasks positions of all the blocks
+     * @param start index of the first block of this range
+     * @param end one past the index of the last block of this range
+     * @param results shared results Table
+     * @param engines each pool thread's engine
+     * @param stats where each pool thread's busy time is counted
+     */
+    public PiTask(int[] tasks, int start, int end, ResultTable results, ThreadLocal<PiEngine> engines,
+                  WorkerStats stats) {
+        this.tasks = tasks;
+        this.start = start;
+        this.end = end;
+        this.results = results;
+        this.engines = engines;
+        this.stats = stats;
+    }
+
+    protected void compute() {
+        if (end - start == 1) {
+            int position = tasks[start];
+            results.put(position, stats.forThread().compute(engines.get(), position));
+            return;
+        }
+        int middle = (start + end) >>> 1;
+        invokeAll(new PiTask(tasks, start, middle, results, engines, stats),
+                new PiTask(tasks, middle, end, results, engines, stats));
+    }
+}
@@ -0,0 +1,70 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.Socket;
+
+/**
+ * One worker connection to a Coordinator. It reads which engine to use, then computes every position of each lease it
+ * is sent and writes each block back as soon as it is done, until the coordinator sends an empty lease. A worker
+ * process runs one of these per processor; they share the prime sieve so it is only built once.
+ *
+ * @author Benjamin Taylor
+ */
+public class PiWorker implements Runnable {
+    private static PrimeSieve primes;
+
+    private String host;
+    private int port;
+
+    /**
+     * @param host the coordinator's host
+     * @param port the coordinator's port
+     */
+    public PiWorker(String host, int port) {
+        this.host = host;
+        this.port = port;
+    }
+
+    // Work for the coordinator until it says every block is done or the connection is lost
+    public void run() {
+        try (Socket socket = new Socket(host, port)) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            String engineName = in.readUTF();
+            int lastPosition = in.readInt();
+            PiEngine engine = engineName.equals("hex") ? new BbpHex()
+                    : engineName.equals("vector") && Bpp.vectorSupported() ? new BppVector(sieve(lastPosition))
+                    : new Bpp(sieve(lastPosition));
+            int count;
+            while ((count = in.readInt()) > 0) {
+                int[] lease = new int[count];
+                for (int i = 0; i < count; i++) {
+                    lease[i] = in.readInt();
+                }
+                for (int position : lease) {
+                    out.writeInt(position);
+                    out.writeInt(engine.getBlock(position));
+                    out.flush();
+                }
+            }
+        }
+        catch (EOFException e) {
+            System.err.println("The coordinator went away");
+        }
+        catch (IOException e) {
+            System.err.printf("Could not work for %s:%d: %s\n", host, port, e.getMessage());
+        }
+    }
+
+    // The primes up to what the last position needs, sieved by whichever connection asks first; every connection of a
+    // worker process talks to the same coordinator, so they all need the same primes
+    private static synchronized PrimeSieve sieve(int lastPosition) {
+        if (primes == null) {
+            primes = PrimeSieve.forPosition(lastPosition);
+        }
+        return primes;
+    }
+}
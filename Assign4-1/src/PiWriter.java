@@ -0,0 +1,218 @@
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Writes the digits of pi while they are still being computed. It watches the result table's watermark, and whenever
+ * the finished prefix grows it checks the new blocks' carries and writes their digits through a buffered channel, so
+ * the output of a long run starts after the first few blocks instead of after the last one.
+ *
+ * The hex engine's digits can only be turned into decimal ones once the whole prefix is known, so for it the writer
+ * collects the hex digits as they finish and converts and writes them all at the end.
+ *
+ * @author Benjamin Taylor
+ */
+public class PiWriter implements Runnable {
+    private static final long POLL_MILLIS = 10;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final ResultTable results;
+    private final int blocks;
+    private final int digitsPerTask;
+    private final int radix;
+    private final int digits;
+    private final WritableByteChannel channel;
+
+    private final int firstDigit;       // radix^digitsPerTask, the place value of a block's first digit
+    private final int blockSize;        // radix^(digitsPerTask + 1), one more than the largest block
+    private final int[] settled;        // blocks after their carry check
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private StringBuilder hexDigits;    // only used by the hex engine
+    private int written = 0;            // blocks already settled and written
+    private long digitsWritten = 0;
+    private IOException failure;
+
+    /**
+     * @param results the table the threads are filling
+     * @param blocks how many blocks are being computed, including the extra one past the end
+     * @param digitsPerTask how many digits of each block are kept
+     * @param radix the base of the engine's digits
+     * @param digits how many decimal digits to write
+     * @param channel where the digits go; the caller writes anything before and after them
+     */
+    public PiWriter(ResultTable results, int blocks, int digitsPerTask, int radix, int digits,
+                    WritableByteChannel channel) {
+        this.results = results;
+        this.blocks = blocks;
+        this.digitsPerTask = digitsPerTask;
+        this.radix = radix;
+        this.digits = digits;
+        this.channel = channel;
+        this.firstDigit = (int) Math.pow(radix, digitsPerTask);
+        this.blockSize = firstDigit * radix;
+        this.settled = new int[blocks];
+        if (radix != 10) {
+            hexDigits = new StringBuilder(blocks * digitsPerTask);
+        }
+    }
+
+    // Keep writing each newly finished prefix until every block has been written, or until a worker fails and the
+    // rest of the blocks will never be finished
+    public void run() {
+        try {
+            while (written < blocks - 1) {
+                if (results.getFailure() != null) {
+                    return;
+                }
+                if (!writeFinishedPrefix()) {
+                    Thread.sleep(POLL_MILLIS);
+                }
+            }
+            if (hexDigits != null) {
+                String decimals = hexToDecimal(hexDigits.toString(), digits);
+                for (int i = 0; i < decimals.length(); i++) {
+                    put((byte) decimals.charAt(i));
+                }
+            }
+            flush();
+        }
+        catch (IOException e) {
+            failure = e;
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * A block as it was written, after its carry check. Only valid once the writer has finished; the extra block past
+     * the end is never checked, so it is as computed.
+     *
+     * @param index which block, 0 for the one at position 1
+     */
+    public int getSettled(int index) {
+        return settled[index];
+    }
+
+    // The error that stopped the writer, or null if it finished
+    public IOException getFailure() {
+        return failure;
+    }
+
+    /**
+     * Settles and writes the blocks between what has been written and the watermark. The last finished block is only
+     * used to check the one before it, and it has to be one whose first digit can't change when it gets checked itself:
+     * a block whose lower digits are all 0 or all the largest digit could still carry into its first digit, so the
+     * writer holds back until the block after it is done too.
+     *
+     * @return true if anything was written
+     */
+    private boolean writeFinishedPrefix() throws IOException {
+        int tail = results.advanceWatermark() - 1;
+        if (tail < blocks - 1) {
+            while (tail > written && couldCarry(block(tail))) {
+                tail--;
+            }
+        }
+        if (tail <= written) {
+            return false;
+        }
+
+        settled[tail] = block(tail);
+        for (int i = tail - 1; i >= written; i--) {
+            settled[i] = checkCarry(i, block(i), settled[i + 1]);
+        }
+        for (int i = written; i < tail; i++) {
+            writeBlock(settled[i] / radix);
+        }
+        written = tail;
+        flush();
+        return true;
+    }
+
+    /**
+     * Checks a block's guard digit against the first digit of the block after it. The guard is the last digit of the
+     * truncated sum, so the rounding error of the sum can leave it one off, and when the true value sits right at a
+     * digit boundary that also means a lost or extra carry into the kept digits (a guard of 9 where the next block
+     * starts with 0, or 0 where it starts with 9). The first digit of the next block is trusted, so the block is nudged
+     * by one in whichever direction makes its guard agree. A disagreement bigger than one is reported.
+     *
+     * @return the block after the check
+     */
+    private int checkCarry(int index, int value, int nextValue) {
+        int next = nextValue / firstDigit;
+        if ((value + 1) % radix == next) {
+            value++;
+        }
+        else if ((value + radix - 1) % radix == next) {
+            value--;
+        }
+        else if (value % radix != next) {
+            System.err.printf("Digits at position %d disagree with the block after them\n", index * digitsPerTask + 1);
+        }
+        // A carry can wrap the block past its largest value or below 0, the same way the sum wraps mod 1
+        return Math.floorMod(value, blockSize);
+    }
+
+    // True if adding or taking one from the block could change its first digit
+    private boolean couldCarry(int value) {
+        int lower = value % firstDigit;
+        return lower == 0 || lower == firstDigit - 1;
+    }
+
+    private int block(int index) {
+        return results.get(index * digitsPerTask + 1);
+    }
+
+    /**
+     * Writes the kept digits of one block, most significant first, stopping once all the requested digits are out.
+     */
+    private void writeBlock(int kept) throws IOException {
+        int place = firstDigit;
+        for (int d = 0; d < digitsPerTask; d++) {
+            place /= radix;
+            char digit = Character.forDigit(kept / place % radix, radix);
+            if (hexDigits != null) {
+                hexDigits.append(digit);
+            }
+            else if (digitsWritten < digits) {
+                put((byte) digit);
+            }
+        }
+    }
+
+    private void put(byte b) throws IOException {
+        if (!buffer.hasRemaining()) {
+            flush();
+        }
+        buffer.put(b);
+        digitsWritten++;
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Converts the hex digits after the point into decimal ones. The hex digits are the fraction x = h / 16^length, so
+     * the first n decimal digits are floor(x * 10^n), found with one big multiplication and a shift.
+     *
+     * @param hex contiguous hex digits of pi, starting right after the point
+     * @param digits how many decimal digits to produce
+     * @return the decimal digits, zero padded to the requested length
+     */
+    public static String hexToDecimal(String hex, int digits) {
+        BigInteger fraction = new BigInteger(hex, 16);
+        String decimal = fraction.multiply(BigInteger.TEN.pow(digits)).shiftRight(4 * hex.length()).toString();
+        StringBuilder padded = new StringBuilder(digits);
+        for (int i = decimal.length(); i < digits; i++) {
+            padded.append('0');
+        }
+        return padded.append(decimal).toString();
+    }
+}
@@ -0,0 +1,110 @@
+import java.util.Arrays;
+
+/**
+ * Holds every prime up to a limit, found once with a segmented Sieve of Eratosthenes. The primes are kept in a plain
+ * int array that is never written after construction, so all the ComputePiDigit threads can share one sieve without
+ * any locking.
+ *
+ * @author Benjamin Taylor
+ */
+public class PrimeSieve {
+    // Numbers sieved at a time; small enough for the segment to stay in the CPU cache
+    private static final int SEGMENT_SIZE = 1 << 16;
+
+    private final int limit;
+    private final int[] primes;
+
+    /**
+     * Sieves all the primes up to and including limit. The primes up to sqrt(limit) are found first with a simple
+     * sieve, then the rest of the range is crossed off one segment at a time using only those small primes.
+     *
+     * @param limit the largest number that needs to be checked
+     */
+    public PrimeSieve(int limit) {
+        this.limit = limit;
+        int root = (int) Math.sqrt(limit);
+        while ((long) (root + 1) * (root + 1) <= limit) {
+            root++;
+        }
+
+        boolean[] composite = new boolean[root + 1];
+        int[] small = new int[root + 1];
+        int smallCount = 0;
+        for (int i = 2; i <= root; i++) {
+            if (!composite[i]) {
+                small[smallCount++] = i;
+                for (long j = (long) i * i; j <= root; j += i) {
+                    composite[(int) j] = true;
+                }
+            }
+        }
+
+        // Roughly n / ln(n) primes below n; the array grows if the estimate comes up short
+        int[] found = new int[Math.max(16, (int) (1.2 * limit / Math.log(Math.max(limit, 3))))];
+        int count = 0;
+        boolean[] segment = new boolean[SEGMENT_SIZE];
+        for (long low = 2; low <= limit; low += SEGMENT_SIZE) {
+            long high = Math.min(low + SEGMENT_SIZE - 1, limit);
+            Arrays.fill(segment, false);
+            for (int s = 0; s < smallCount; s++) {
+                long p = small[s];
+                if (p * p > high) {
+                    break;
+                }
+                long start = Math.max(p * p, (low + p - 1) / p * p);
+                for (long j = start; j <= high; j += p) {
+                    segment[(int) (j - low)] = true;
+                }
+            }
+            for (long n = low; n <= high; n++) {
+                if (!segment[(int) (n - low)]) {
+                    if (count == found.length) {
+                        found = Arrays.copyOf(found, count * 2);
+                    }
+                    found[count++] = (int) n;
+                }
+            }
+        }
+        this.primes = Arrays.copyOf(found, count);
+    }
+
+    /**
+     * Finds a sieve big enough for every prime Bpp.getDecimal needs when asked for the given position.
+     *
+     * @param position the largest position of pi that will be computed
+     * @return a sieve covering 2N, where N is the number of series terms for that position
+     * @throws IllegalArgumentException if the position is past maxPosition()
+     */
+    public static PrimeSieve forPosition(long position) {
+        if (position > maxPosition()) {
+            throw new IllegalArgumentException("Position " + position + " needs primes past " + Integer.MAX_VALUE);
+        }
+        return new PrimeSieve((int) (2 * Bpp.termsFor(position)));
+    }
+
+    /**
+     * The largest position forPosition can cover. The primes are kept as ints, so 2N has to fit in an int as well.
+     */
+    public static long maxPosition() {
+        long position = (long) (Integer.MAX_VALUE / 2 * Math.log(2) / Math.log(10));
+        while (2 * Bpp.termsFor(position) > Integer.MAX_VALUE) {
+            position--;
+        }
+        return position;
+    }
+
+    // The largest number this sieve checked
+    public int getLimit() {
+        return limit;
+    }
+
+    // How many primes were found
+    public int size() {
+        return primes.length;
+    }
+
+    // The ith prime, starting with get(0) == 2
+    public int get(int i) {
+        return primes[i];
+    }
+}
@@ -0,0 +1,39 @@
+/**
+ * Reports the progress of the computation from its own thread, so the worker threads never print. It looks at the
+ * result table a few times a second and prints a dot for every percent finished, 20 to a line, the same display the
+ * result table used to print while holding its lock.
+ *
+ * @author Benjamin Taylor
+ */
+public class ProgressSampler implements Runnable {
+    private static final long SAMPLE_MILLIS = 100;
+
+    private ResultTable results;
+
+    public ProgressSampler(ResultTable results) {
+        this.results = results;
+    }
+
+    // Print the dots that are due until every block is finished, a worker fails, or the thread is interrupted
+    public void run() {
+        int printed = 0;
+        boolean done = false;
+        while (!done) {
+            try {
+                Thread.sleep(SAMPLE_MILLIS);
+            }
+            catch (InterruptedException e) {
+                done = true;
+            }
+            int finished = results.size();
+            done = done || finished == results.capacity() || results.getFailure() != null;
+            int due = (int) ((long) finished * 100 / results.capacity());
+            for (; printed < due; printed++) {
+                System.out.print(".");
+                if ((printed + 1) % 20 == 0) {
+                    System.out.println();
+                }
+            }
+        }
+    }
+}
@@ -1,36 +1,105 @@
-import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
- * Maintains a hashmap through aggregation so the resource can be locked and only one thread will be able to access
+ * Holds the computed blocks of pi in a preallocated array with one slot per block, so storing a result is a single
+ * atomic write with no boxing and no lock. Slots hold the block plus one, leaving 0 to mean "not computed yet". The
+ * completed count is a LongAdder so the threads don't all contend on one counter, and the contiguous prefix of finished
+ * blocks is tracked as a watermark so output can start before the last block is done.
  *@author Benjamin Taylor
  */
 public class ResultTable {
-    private HashMap<Integer, Integer> results = new HashMap<>();
+    private final AtomicIntegerArray blocks;
+    private final int digitsPerTask;
+    private final LongAdder completed = new LongAdder();
+    private final AtomicInteger watermark = new AtomicInteger();
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+    private Checkpoint checkpoint;
 
     /**
-     * Places a key value pair into the table with the digit place as the key and the actual value for the nth digit of
-     * pi as the value. It then updates the progress of computation to the user.
-     *
-     * @param digit the nth digit computed for pi
-     * @param number the value of the the nth digit of pi
+     * @param blockCount how many blocks will be computed
+     * @param digitsPerTask the distance between the first positions of two neighbouring blocks
      */
-    public synchronized void put(int digit, int number) {
-        results.put(digit, number);
+    public ResultTable(int blockCount, int digitsPerTask) {
+        this.blocks = new AtomicIntegerArray(blockCount);
+        this.digitsPerTask = digitsPerTask;
+    }
 
-        int size = size();
-        if (size % 10 == 0 && size != 0) {
-            System.out.print(".");
+    /**
+     * Stores the block of digits of pi starting at a position, and records it in the checkpoint if there is one. Every
+     * position is computed by exactly one thread.
+     *
+     * @param digit the position of the first digit in the block
+     * @param number the digits of pi starting at that position
+     */
+    public void put(int digit, int number) {
+        restore(digit, number);
+        if (checkpoint != null) {
+            checkpoint.record(digit, number);
         }
-        if (size % 200 == 0 && size != 0) {
-            System.out.println();
+    }
+
+    /**
+     * Stores a block that was read back from a checkpoint, without recording it again.
+     */
+    public void restore(int digit, int number) {
+        blocks.set(index(digit), number + 1);
+        completed.increment();
+    }
+
+    // Every block put from now on is also recorded here; set before the threads start
+    public void setCheckpoint(Checkpoint checkpoint) {
+        this.checkpoint = checkpoint;
+    }
+
+    // How many blocks have been stored
+    public int size() {
+        return (int) completed.sum();
+    }
+
+    // How many blocks there are room for
+    public int capacity() {
+        return blocks.length();
+    }
+
+    /**
+     * @param digit the position of the first digit in the block
+     * @return the block starting at that position, or -1 if it hasn't been computed yet
+     */
+    public int get(int digit) {
+        return blocks.get(index(digit)) - 1;
+    }
+
+    /**
+     * Moves the watermark past every block that is now finished. Blocks below the watermark are all done, so everything
+     * before it can be used while the rest are still being computed.
+     *
+     * @return the number of leading blocks that are all finished
+     */
+    public int advanceWatermark() {
+        int mark = watermark.get();
+        while (mark < blocks.length() && blocks.get(mark) != 0) {
+            mark++;
         }
+        return watermark.accumulateAndGet(mark, Math::max);
+    }
+
+    /**
+     * Records that a worker failed, so whatever is waiting for the blocks stops instead of waiting for ones that will
+     * never be stored. Only the first failure is kept.
+     */
+    public void fail(Throwable cause) {
+        failure.compareAndSet(null, cause);
     }
 
-    public synchronized int size() {
-        return results.size();
+    // The first worker failure, or null if none has failed
+    public Throwable getFailure() {
+        return failure.get();
     }
 
-    public synchronized int get(int digit) {
-        return results.get(digit);
+    private int index(int digit) {
+        return (digit - 1) / digitsPerTask;
     }
 }
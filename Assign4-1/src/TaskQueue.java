@@ -1,33 +1,105 @@
-import java.util.LinkedList;
-import java.util.Optional;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * Contains a linked list queue through aggregation so only one thread can access the certain methods at a time
+ * Hands out tasks to the threads without any locking. The tasks are a fixed int array filled in before the threads
+ * start, and an atomic cursor moves through it: each claim takes the next chunk of positions, so no two threads get the
+ * same task and none of them ever waits on a monitor.
+ *
+ * Chunks are either a fixed size or guided by cost: each claim takes about 1/(2 * threads) of the estimated work still
+ * left, so the chunks start big and shrink to single tasks near the end, where a big chunk would leave one thread
+ * finishing alone. Either way the cursor only moves by compare-and-set and stops at the end of the array, so it can't
+ * wrap around however big the chunks are.
  * @author Benjamin Taylor
  */
-public class TaskQueue<E> {
-    private LinkedList<E> taskQueue = new LinkedList();
+public class TaskQueue {
+    private final int[] tasks;
+    private final int chunkSize;
+    private final double[] costBefore;  // costBefore[i] is the estimated cost of tasks 0 to i - 1; null for fixed chunks
+    private final int threads;
+    private final AtomicInteger next = new AtomicInteger();
 
-    // May not necessarily need to be synchronized since only a single thread accesses it, but adds tasks to the queue
-    public synchronized void enqueue(E digit) {
-        taskQueue.add(digit);
+    /**
+     * @param tasks the positions to compute, in the order they should be handed out; not copied, so not to be changed
+     * @param chunkSize how many tasks each claim takes
+     */
+    public TaskQueue(int[] tasks, int chunkSize) {
+        this.tasks = tasks;
+        this.chunkSize = chunkSize;
+        this.costBefore = null;
+        this.threads = 1;
     }
 
     /**
-     * takes a task from the queue, returns
-     * @return a task, or the digit to compute for pi
+     * Creates a queue with guided chunks.
+     * @param tasks the positions to compute, in the order they should be handed out; not copied, so not to be changed
+     * @param costs the estimated cost of each task
+     * @param threads how many threads will be claiming tasks
      */
-    public synchronized Optional<E> dequeue() {
-        if (taskQueue.isEmpty()) return Optional.empty();
+    public TaskQueue(int[] tasks, double[] costs, int threads) {
+        this.tasks = tasks;
+        this.chunkSize = 1;
+        this.costBefore = new double[tasks.length + 1];
+        for (int i = 0; i < tasks.length; i++) {
+            costBefore[i + 1] = costBefore[i] + costs[i];
+        }
+        this.threads = threads;
+    }
+
+    /**
+     * Claims the next chunk of tasks. The claimed tasks are get(start(range)) up to, but not including,
+     * get(end(range)).
+     * @return the range of tasks claimed, or -1 when there are none left
+     */
+    public long claim() {
+        while (true) {
+            int start = next.get();
+            if (start >= tasks.length) {
+                return -1;
+            }
+            int end;
+            if (costBefore == null) {
+                end = start + Math.min(chunkSize, tasks.length - start);
+            }
+            else {
+                // Find the first end where the chunk's cost reaches its share of what is left, and take at least one
+                double total = costBefore[tasks.length];
+                double target = costBefore[start] + (total - costBefore[start]) / (2 * threads);
+                end = Arrays.binarySearch(costBefore, start + 1, tasks.length + 1, target);
+                end = Math.max(start + 1, end >= 0 ? end : -end - 1);
+                end = Math.min(end, tasks.length);
+            }
+            if (next.compareAndSet(start, end)) {
+                return range(start, end);
+            }
+        }
+    }
+
+    // Index of the first task in a claimed range
+    public static int start(long range) {
+        return (int) (range >>> 32);
+    }
+
+    // One past the index of the last task in a claimed range
+    public static int end(long range) {
+        return (int) range;
+    }
+
+    private static long range(int start, int end) {
+        return ((long) start << 32) | end;
+    }
 
-        return Optional.of(taskQueue.remove());
+    // The task at an index inside a claimed range
+    public int get(int index) {
+        return tasks[index];
     }
 
-    public synchronized boolean isEmpty() {
-        return taskQueue.size() == 0;
+    public boolean isEmpty() {
+        return next.get() >= tasks.length;
     }
 
-    public synchronized int size() {
-        return taskQueue.size();
+    // How many tasks haven't been claimed yet
+    public int size() {
+        return Math.max(0, tasks.length - next.get());
     }
 }
@@ -0,0 +1,137 @@
+import java.util.LinkedList;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Measures how many tasks per second the threads can take out of the task queue as the number of threads grows. The
+ * work done per task is tiny on purpose, so the numbers show the cost of handing tasks out and not of computing digits.
+ * The locked LinkedList queue the program used before is kept below to compare against.
+ *
+ * Run with: java TaskQueueBenchmark [tasks] [max threads]
+ *
+ * @author Benjamin Taylor
+ */
+public class TaskQueueBenchmark {
+    // Spin iterations done per task, standing in for a very cheap digit
+    private static final int WORK_PER_TASK = 50;
+
+    // Results are folded in here so the JIT can't discard the work
+    private static volatile long sink;
+
+    public static void main(String[] args) throws InterruptedException {
+        int taskCount = args.length > 0 ? Integer.parseInt(args[0]) : 5000000;
+        int maxThreads = args.length > 1 ? Integer.parseInt(args[1]) : 128;
+        int[] tasks = new int[taskCount];
+        for (int i = 0; i < taskCount; i++) {
+            tasks[i] = i + 1;
+        }
+
+        System.out.printf("%8s %16s %16s %16s\n", "threads", "locked Mtask/s", "chunk 1 Mtask/s", "chunk 64 Mtask/s");
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            // Warm each queue up once before timing it
+            for (int round = 0; round < 2; round++) {
+                double locked = run(threads, new LockedQueue(tasks));
+                double single = run(threads, new LockFree(new TaskQueue(tasks, 1)));
+                double chunked = run(threads, new LockFree(new TaskQueue(tasks, 64)));
+                if (round == 1) {
+                    System.out.printf("%8d %16.2f %16.2f %16.2f\n", threads, locked, single, chunked);
+                }
+            }
+        }
+    }
+
+    /**
+     * Starts the threads together, lets them drain the queue and times it.
+     * @return millions of tasks per second
+     */
+    private static double run(int threadCount, Source source) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[threadCount];
+        int[] handled = new int[threadCount];
+        for (int i = 0; i < threadCount; i++) {
+            int id = i;
+            threads[i] = new Thread(() -> {
+                try {
+                    start.await();
+                }
+                catch (InterruptedException e) {
+                    return;
+                }
+                handled[id] = source.drain();
+            });
+            threads[i].start();
+        }
+        long timeStart = System.nanoTime();
+        start.countDown();
+        for (Thread t : threads) {
+            t.join();
+        }
+        long elapsed = System.nanoTime() - timeStart;
+        int total = 0;
+        for (int count : handled) {
+            total += count;
+        }
+        return total * 1000.0 / elapsed;
+    }
+
+    private static long work(int task) {
+        long x = task;
+        for (int i = 0; i < WORK_PER_TASK; i++) {
+            x = x * 6364136223846793005L + 1442695040888963407L;
+        }
+        return x;
+    }
+
+    // Something the threads can take every task out of; returns how many tasks this thread handled
+    private interface Source {
+        int drain();
+    }
+
+    private static class LockFree implements Source {
+        private final TaskQueue queue;
+
+        LockFree(TaskQueue queue) {
+            this.queue = queue;
+        }
+
+        public int drain() {
+            int count = 0;
+            long x = 0;
+            long range;
+            while ((range = queue.claim()) >= 0) {
+                for (int i = TaskQueue.start(range), end = TaskQueue.end(range); i < end; i++) {
+                    x += work(queue.get(i));
+                    count++;
+                }
+            }
+            sink += x;
+            return count;
+        }
+    }
+
+    // The synchronized LinkedList<Integer> queue from before, boxing and all
+    private static class LockedQueue implements Source {
+        private final LinkedList<Integer> queue = new LinkedList<>();
+
+        LockedQueue(int[] tasks) {
+            for (int task : tasks) {
+                queue.add(task);
+            }
+        }
+
+        private synchronized Integer dequeue() {
+            return queue.isEmpty() ? null : queue.remove();
+        }
+
+        public int drain() {
+            int count = 0;
+            long x = 0;
+            Integer task;
+            while ((task = dequeue()) != null) {
+                x += work(task);
+                count++;
+            }
+            sink += x;
+            return count;
+        }
+    }
+}
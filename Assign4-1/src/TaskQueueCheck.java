@@ -0,0 +1,109 @@
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Checks that the task queue hands every task out exactly once while several threads claim at the same time, for
+ * chunk sizes from 1 up to Integer.MAX_VALUE and for guided chunks. Huge chunks with three or more threads used to
+ * wrap the cursor past Integer.MAX_VALUE and hand out negative ranges. There are no test classes in this project, so
+ * this runs from the command line and exits with 1 if any case fails.
+ *
+ * Run with: java TaskQueueCheck
+ *
+ * @author Benjamin Taylor
+ */
+public class TaskQueueCheck {
+    private static final int TASKS = 100000;
+    private static final int ROUNDS = 20;
+    private static final int[] CHUNKS = { 1, 7, 4096, TASKS, Integer.MAX_VALUE / 2 + 1, Integer.MAX_VALUE - 1,
+            Integer.MAX_VALUE };
+    private static final int[] THREADS = { 1, 3, 8 };
+
+    public static void main(String[] args) throws InterruptedException {
+        int[] tasks = new int[TASKS];
+        for (int i = 0; i < TASKS; i++) {
+            tasks[i] = i + 1;
+        }
+        double[] costs = new double[TASKS];
+        for (int i = 0; i < TASKS; i++) {
+            costs[i] = i + 1;
+        }
+
+        int failures = 0;
+        for (int threads : THREADS) {
+            for (int chunkSize : CHUNKS) {
+                String failure = null;
+                for (int round = 0; round < ROUNDS && failure == null; round++) {
+                    failure = drain(new TaskQueue(tasks, chunkSize), threads);
+                }
+                failures += report(String.format("chunk %d", chunkSize), threads, failure);
+            }
+            String failure = null;
+            for (int round = 0; round < ROUNDS && failure == null; round++) {
+                failure = drain(new TaskQueue(tasks, costs, threads), threads);
+            }
+            failures += report("guided", threads, failure);
+        }
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static int report(String queue, int threads, String failure) {
+        System.out.printf("%-18s %2d threads : %s\n", queue, threads, failure == null ? "ok" : failure);
+        return failure == null ? 0 : 1;
+    }
+
+    /**
+     * Starts the threads together and lets them claim until the queue is empty.
+     * @return what went wrong, or null if every task was claimed exactly once
+     */
+    private static String drain(TaskQueue queue, int threadCount) throws InterruptedException {
+        AtomicIntegerArray claimed = new AtomicIntegerArray(TASKS);
+        String[] errors = new String[threadCount];
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[threadCount];
+        for (int i = 0; i < threadCount; i++) {
+            int id = i;
+            threads[i] = new Thread(() -> {
+                try {
+                    start.await();
+                }
+                catch (InterruptedException e) {
+                    return;
+                }
+                long range;
+                while ((range = queue.claim()) >= 0) {
+                    int first = TaskQueue.start(range);
+                    int end = TaskQueue.end(range);
+                    if (first < 0 || end > TASKS || first >= end) {
+                        errors[id] = String.format("claimed the range [%d, %d)", first, end);
+                        return;
+                    }
+                    for (int index = first; index < end; index++) {
+                        claimed.incrementAndGet(index);
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        start.countDown();
+        for (Thread t : threads) {
+            t.join();
+        }
+
+        for (String error : errors) {
+            if (error != null) {
+                return error;
+            }
+        }
+        for (int index = 0; index < TASKS; index++) {
+            if (claimed.get(index) != 1) {
+                return String.format("task %d was claimed %d times", index, claimed.get(index));
+            }
+        }
+        if (!queue.isEmpty() || queue.size() != 0) {
+            return String.format("%d tasks left after draining", queue.size());
+        }
+        return null;
+    }
+}
@@ -0,0 +1,120 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Checks the digits the writer settled by computing them a second time from a different position. For a checked block
+ * the engine is asked for the block starting half a block later, which overlaps the last half of that block and the
+ * first half of the next. The sum behind it is a different one, with its own rounding, so a block that came out wrong
+ * would have to come out wrong the same way twice to get through.
+ *
+ * Only the guard digit of the shifted block is allowed to be one off, the same slack the carry check gives it. Checking
+ * a fraction of the blocks costs about that fraction of the computation, so the blocks checked are spread evenly over
+ * the whole range, the last and most expensive one always included.
+ *
+ * @author Benjamin Taylor
+ */
+public class Verifier {
+    private PiWriter writer;
+    private Supplier<PiEngine> engines;
+    private int blocks;
+    private int digitsPerTask;
+    private int radix;
+    private int shift;
+    private long kept;          // radix^digitsPerTask, one more than the largest kept digits of a block
+    private long blockSize;     // radix^(digitsPerTask + 1), one more than the largest block
+    private long dropped;       // radix^(digitsPerTask - shift - 1), the digits past the shifted block
+    private final List<Integer> mismatches = new ArrayList<>();
+    private int checked;
+    private double seconds;
+
+    /**
+     * @param writer a writer that has finished, holding the settled blocks
+     * @param engines makes the engines to recompute with, one per thread
+     * @param blocks how many blocks were computed, including the extra one past the end
+     * @param digitsPerTask how many digits of each block are kept
+     * @param radix the base of the engine's digits
+     */
+    public Verifier(PiWriter writer, Supplier<PiEngine> engines, int blocks, int digitsPerTask, int radix) {
+        this.writer = writer;
+        this.engines = engines;
+        this.blocks = blocks;
+        this.digitsPerTask = digitsPerTask;
+        this.radix = radix;
+        this.shift = digitsPerTask / 2;
+        this.kept = (long) Math.pow(radix, digitsPerTask);
+        this.blockSize = kept * radix;
+        this.dropped = (long) Math.pow(radix, digitsPerTask - shift - 1);
+    }
+
+    /**
+     * Checks the given fraction of the written blocks, split between the threads, and keeps the positions that failed.
+     *
+     * @param fraction how much of the blocks to check, up to 1 for all of them
+     * @param threads how many threads to check with
+     */
+    public void verify(double fraction, int threads) throws InterruptedException {
+        // Every block but the extra one was written, and each check needs the block after it as well
+        int written = blocks - 1;
+        int[] sample = new int[written];
+        int count = 0;
+        for (int i = 0; i < written; i++) {
+            if (Math.floor((i + 1) * fraction) > Math.floor(i * fraction) || i == written - 1) {
+                sample[count++] = i;
+            }
+        }
+        TaskQueue queue = new TaskQueue(Arrays.copyOf(sample, count), 1);
+
+        long start = System.nanoTime();
+        Thread[] checkers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            PiEngine engine = engines.get();
+            checkers[t] = new Thread(() -> {
+                long range;
+                while ((range = queue.claim()) >= 0) {
+                    int index = queue.get(TaskQueue.start(range));
+                    if (!check(index, engine)) {
+                        synchronized (mismatches) {
+                            mismatches.add(index * digitsPerTask + 1);
+                        }
+                    }
+                }
+            });
+            checkers[t].start();
+        }
+        for (Thread t : checkers) {
+            t.join();
+        }
+        seconds = (System.nanoTime() - start) / 1e9;
+        checked = count;
+        mismatches.sort(null);
+    }
+
+    /**
+     * Recomputes the digits from the middle of a block into the next one and compares them with what was written.
+     */
+    private boolean check(int index, PiEngine engine) {
+        // The kept digits of the block and the next one side by side, then the shifted block's worth from the middle
+        long overlap = writer.getSettled(index) / radix * kept + writer.getSettled(index + 1) / radix;
+        long expected = overlap / dropped % blockSize;
+        long shifted = engine.getBlock((long) index * digitsPerTask + 1 + shift);
+        long difference = Math.floorMod(shifted - expected, blockSize);
+        return difference == 0 || difference == 1 || difference == blockSize - 1;
+    }
+
+    // How many blocks were checked
+    public int getChecked() {
+        return checked;
+    }
+
+    // The first positions of the blocks that failed, lowest first
+    public List<Integer> getMismatches() {
+        return mismatches;
+    }
+
+    // How long the check took
+    public double getSeconds() {
+        return seconds;
+    }
+}
@@ -0,0 +1,133 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps how long each worker spent computing blocks and how long it spent doing anything else, so the execution modes
+ * can be compared on the same run. A worker is whatever runs blocks: a thread for the modes that keep their threads for
+ * the whole run, or a single task for virtual threads. Each worker only ever writes its own row; the counts are volatile
+ * so the metrics can read them while the run is going. Every block's time also goes into one shared histogram.
+ *
+ * @author Benjamin Taylor
+ */
+public class WorkerStats {
+    // Above this many workers only the totals are printed
+    private static final int MAX_ROWS = 256;
+
+    private final long runStart;
+    private final List<Worker> workers = new ArrayList<>();
+    private final ThreadLocal<Worker> perThread = ThreadLocal.withInitial(this::worker);
+    private final LatencyHistogram latencies = new LatencyHistogram();
+
+    public WorkerStats() {
+        this.runStart = System.nanoTime();
+    }
+
+    /**
+     * One worker's times. Busy is the time spent inside the engine; idle is the rest of the time from when the worker
+     * could have started until it finished, which includes claiming work, waiting for it, and sitting done at the end.
+     */
+    public static class Worker {
+        private final long begin;
+        private final LatencyHistogram latencies;
+        private volatile long end = -1;
+        private volatile long busy;
+        private volatile int blocks;
+
+        private Worker(long begin, LatencyHistogram latencies) {
+            this.begin = begin;
+            this.latencies = latencies;
+        }
+
+        /**
+         * Computes one block, counting the time as busy.
+         */
+        public int compute(PiEngine engine, int position) {
+            long start = System.nanoTime();
+            int block = engine.getBlock(position);
+            long took = System.nanoTime() - start;
+            busy += took;
+            blocks++;
+            latencies.record(took);
+            return block;
+        }
+
+        // Marks a single task worker as done; workers that aren't marked are counted until the end of the run
+        public void finish() {
+            end = System.nanoTime();
+        }
+
+        // How many blocks it has computed so far
+        public int getBlocks() {
+            return blocks;
+        }
+
+        // How long it has spent computing them, in seconds
+        public double getBusySeconds() {
+            return busy / 1e9;
+        }
+    }
+
+    // A worker that lasts the whole run
+    public synchronized Worker worker() {
+        Worker worker = new Worker(runStart, latencies);
+        workers.add(worker);
+        return worker;
+    }
+
+    // The worker for the calling thread, for pools whose threads pick up many tasks
+    public Worker forThread() {
+        return perThread.get();
+    }
+
+    /**
+     * A worker for a single task, which is counted from when it was handed to the executor.
+     *
+     * @param submitted System.nanoTime() when the task was submitted
+     */
+    public synchronized Worker forTask(long submitted) {
+        Worker worker = new Worker(submitted, latencies);
+        workers.add(worker);
+        return worker;
+    }
+
+    // The workers so far, in the order they started
+    public synchronized List<Worker> snapshot() {
+        return new ArrayList<>(workers);
+    }
+
+    // How long every block took
+    public LatencyHistogram getLatencies() {
+        return latencies;
+    }
+
+    /**
+     * Prints every worker's busy and idle time and the totals. Call after every worker is done.
+     *
+     * @param mode name of the execution mode
+     * @param threads how many threads were computing at once
+     */
+    public synchronized void report(String mode, int threads) {
+        long runEnd = System.nanoTime();
+        long totalBusy = 0;
+        long totalIdle = 0;
+        int totalBlocks = 0;
+        System.out.printf("Mode %s: %d workers over %d threads, %.2f sec\n", mode, workers.size(), threads,
+                (runEnd - runStart) / 1e9);
+        if (workers.size() <= MAX_ROWS) {
+            System.out.println("  worker  blocks  busy sec  idle sec  busy %");
+        }
+        for (int i = 0; i < workers.size(); i++) {
+            Worker worker = workers.get(i);
+            long idle = (worker.end < 0 ? runEnd : worker.end) - worker.begin - worker.busy;
+            totalBusy += worker.busy;
+            totalIdle += idle;
+            totalBlocks += worker.blocks;
+            if (workers.size() <= MAX_ROWS) {
+                System.out.printf("  %6d  %6d  %8.3f  %8.3f  %6.1f\n", i, worker.blocks, worker.busy / 1e9, idle / 1e9,
+                        100.0 * worker.busy / Math.max(1, worker.busy + idle));
+            }
+        }
+        System.out.printf("  total   %6d  %8.3f  %8.3f  %6.1f%% of %d threads busy\n", totalBlocks, totalBusy / 1e9,
+                totalIdle / 1e9, 100.0 * totalBusy / Math.max(1, (runEnd - runStart) * threads), threads);
+    }
+}
@@ -1,5 +1,3 @@
-import java.util.ArrayList;
-
 /**
  * @author Benjamin Taylor A02021288
  *
@@ -7,18 +5,22 @@ import java.util.ArrayList;
  */
 public class Assign4 {
     public static void main(String[] args) {
-        // Create an array list, place 1000 digits in it, and then shuffle them
-        ArrayList<Integer> thousand = new ArrayList<>();
+        // Create an array, place 1000 digits in it, and then shuffle them
+        int[] thousand = new int[1000];
         for (int i = 0; i < 1000; i++) {
-            thousand.add(i+1);
+            thousand[i] = i+1;
         }
-        java.util.Collections.shuffle(thousand);
-
-        // Initialize a new taskqueue to be a shared resource for threads, and then place the randomized 1000 digits in it
-        TaskQueue taskQueue = new TaskQueue();
-        for (int i = 0; i < 1000; i++) {
-            taskQueue.enqueue(thousand.get(i));
+        java.util.Random random = new java.util.Random();
+        for (int i = thousand.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = thousand[i];
+            thousand[i] = thousand[j];
+            thousand[j] = swap;
         }
+
+        // Initialize a new taskqueue over the randomized 1000 digits to be a shared resource for threads
+        TaskQueue taskQueue = new TaskQueue(thousand);
+
         //debugging purposes
 //        System.out.printf("Number of cpus: %d\n", Runtime.getRuntime().availableProcessors());
 
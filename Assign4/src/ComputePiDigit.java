@@ -15,10 +15,10 @@ public class ComputePiDigit implements Runnable {
         this.threadName = name;
     }
 
-    // While the taskQueue is not empty continue to grab tasks to compute the digit for and place in the result table
+    // Continue to grab tasks to compute the digit for and place in the result table until the taskQueue runs out
     public void run() {
-        while (!taskQueue.isEmpty()) {
-            int digit = taskQueue.dequeue();
+        int digit;
+        while ((digit = taskQueue.dequeue()) != -1) {
             int result = new Bpp(digit).getDecimal(digit);
             results.put(digit, result);
         }
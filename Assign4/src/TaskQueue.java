@@ -1,39 +1,45 @@
-import java.util.LinkedList;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * Contains a linked list queue through aggregation so only one thread can access the certain methods at a time
+ * Hands out the digits to compute without any locking. The digits are a fixed int array filled in before the threads
+ * start, and an atomic cursor moves through it, so each dequeue is a single atomic increment and no two threads ever
+ * get the same digit.
  * @author Benjamin Taylor
  */
 public class TaskQueue {
-    private LinkedList<Integer> taskQueue = new LinkedList();
+    private final int[] tasks;
+    private final AtomicInteger next = new AtomicInteger();
 
-    // May not necessarily need to be synchronized since only a single thread accesses it, but adds tasks to the queue
-    public synchronized void enqueue(int digit) {
-        taskQueue.add(digit);
+    // The digits to compute, in the order they should be handed out
+    public TaskQueue(int[] tasks) {
+        this.tasks = tasks;
     }
 
     /**
-     * takes a task from the queue, then I check the size to know whether to update the status. This method is synchronized
-     * so no other thread will be able to create a race condition while updating the status or while dequeueing.
-     * @return a task, or the digit to compute for pi
+     * takes a task from the queue, then I check how many are left to know whether to update the status. Every index is
+     * claimed by exactly one thread, so the status is printed once per 10 digits without needing a lock.
+     * @return a task, or the digit to compute for pi; -1 once the queue is empty
      */
-    public synchronized int dequeue() {
-        int digit = taskQueue.remove();
-        int size = size();
-        if (size % 10 == 0 && size != 1000) {
+    public int dequeue() {
+        int index = next.getAndIncrement();
+        if (index >= tasks.length) {
+            return -1;
+        }
+        int size = tasks.length - index - 1;
+        if (size % 10 == 0 && size != tasks.length) {
             System.out.print(".");
         }
-        if (size % 200 == 0 && size != 1000) {
+        if (size % 200 == 0 && size != tasks.length) {
             System.out.println();
         }
-        return digit;
+        return tasks[index];
     }
 
-    public synchronized boolean isEmpty() {
-        return taskQueue.size() == 0;
+    public boolean isEmpty() {
+        return next.get() >= tasks.length;
     }
 
-    public synchronized int size() {
-        return taskQueue.size();
+    public int size() {
+        return Math.max(0, tasks.length - next.get());
     }
 }
@@ -1,10 +1,28 @@
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Queue;
 
 public class Assign5 {
     private final static int CPU_COUNT = 1;
+    public final static String SCHEDULERS = "fcfs|sjf|srtf|priority|rr";
+    private final static int MAX_LIST_VALUES = 1000000;
 
+    /**
+     * Runs the demos, or with arguments, one scheduler over a trace or a generated workload.
+     */
     public static void main(String[] args) {
+        if (args.length > 0) {
+            runWorkload(args);
+            return;
+        }
         System.out.println("---------------------------------------------------------");
         demoFCFS();
         System.out.println();
@@ -115,4 +133,286 @@ public class Assign5 {
         System.out.printf("Number of context switches: %d\n", scheduler.getNumberOfContextSwitches());
         System.out.println("RR CPU scheduling simulation complete");
     }
+
+    /**
+     * Simulates one scheduler over the processes in a trace file or generated on the fly, so a big
+     * workload is streamed through the platform instead of built up as a list first.  With -sweep,
+     * the scheduler, CPU count, quantum and seed can each be a list, and every combination is run.
+     */
+    private static void runWorkload(String[] args) {
+        String[] schedulerNames = {"fcfs"};
+        long[] quanta = {4};
+        long[] cpuCounts = {CPU_COUNT};
+        String traceFile = null;
+        String bursts = "exponential";
+        long count = 1000;
+        double meanInterarrival = 10;
+        double meanBurst = 8;
+        long[] seeds = {1};
+        String writeTrace = null;
+        String sweepFile = null;
+        String metricsFile = null;
+        LogLevel logLevel = LogLevel.DEBUG;
+        String logFile = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        for (int i = 0; i < args.length; i += 2) {
+            try {
+                if (args[i].equals("-scheduler")) {
+                    schedulerNames = args[i + 1].split(",");
+                    for (String name : schedulerNames) {
+                        if (!name.matches(SCHEDULERS)) {
+                            throw new Exception();
+                        }
+                    }
+                }
+                else if (args[i].equals("-quantum")) {
+                    quanta = parseNumbers(args[i + 1], 1, Integer.MAX_VALUE);
+                }
+                else if (args[i].equals("-cpus")) {
+                    cpuCounts = parseNumbers(args[i + 1], 1, Integer.MAX_VALUE);
+                }
+                else if (args[i].equals("-trace")) {
+                    traceFile = args[i + 1];
+                }
+                else if (args[i].equals("-bursts")) {
+                    bursts = args[i + 1];
+                    if (!bursts.matches(SyntheticWorkload.BURSTS)) {
+                        throw new Exception();
+                    }
+                }
+                else if (args[i].equals("-count")) {
+                    count = Long.parseLong(args[i + 1]);
+                    if (count < 0) {
+                        throw new Exception();
+                    }
+                }
+                else if (args[i].equals("-interarrival")) {
+                    meanInterarrival = Double.parseDouble(args[i + 1]);
+                    if (!(meanInterarrival >= 0)) {
+                        throw new Exception();
+                    }
+                }
+                else if (args[i].equals("-meanburst")) {
+                    meanBurst = Double.parseDouble(args[i + 1]);
+                    if (!(meanBurst > 0)) {
+                        throw new Exception();
+                    }
+                }
+                else if (args[i].equals("-seed")) {
+                    seeds = parseNumbers(args[i + 1], Long.MIN_VALUE, Long.MAX_VALUE);
+                }
+                else if (args[i].equals("-writetrace")) {
+                    writeTrace = args[i + 1];
+                }
+                else if (args[i].equals("-log")) {
+                    if (!args[i + 1].matches(LogLevel.NAMES)) {
+                        throw new Exception();
+                    }
+                    logLevel = LogLevel.valueOf(args[i + 1].toUpperCase());
+                }
+                else if (args[i].equals("-logfile")) {
+                    logFile = args[i + 1];
+                }
+                else if (args[i].equals("-metrics")) {
+                    metricsFile = args[i + 1];
+                }
+                else if (args[i].equals("-sweep")) {
+                    sweepFile = args[i + 1];
+                }
+                else if (args[i].equals("-threads")) {
+                    threads = Integer.parseInt(args[i + 1]);
+                    if (threads < 1) {
+                        throw new Exception();
+                    }
+                }
+                else {
+                    System.out.printf("Unknown command line argument: %s\n", args[i]);
+                    return;
+                }
+            }
+            catch (Exception e) {
+                // A list of values says what was wrong with it; anything else only gets the usage below
+                if (e instanceof IllegalArgumentException && !(e instanceof NumberFormatException)) {
+                    System.out.println(e.getMessage());
+                }
+                System.out.println("  -scheduler [fcfs|sjf|srtf|priority|rr] : Scheduling algorithm to simulate\n" +
+                        "  -quantum [n] : Time quantum for rr; valid range [1, 2147483647]\n" +
+                        "  -cpus [n] : Number of CPUs; valid range [1, 2147483647]\n" +
+                        "  -trace [file] : Read the processes from a trace, CSV if the name ends in .csv, otherwise\n" +
+                        "      binary; without it they are generated with the options below\n" +
+                        "  -bursts [exponential|pareto|bimodal] : Distribution of the generated burst times\n" +
+                        "  -count [n] : Number of processes to generate\n" +
+                        "  -interarrival [mean] : Mean time between generated arrivals, which are a Poisson process\n" +
+                        "  -meanburst [mean] : Mean generated burst time\n" +
+                        "  -seed [n] : Seed for generating the processes\n" +
+                        "  -writetrace [file] : Write the processes to a binary trace instead of simulating them\n" +
+                        "  -log [off|info|debug] : Log nothing, only processes completing, or every scheduling event\n" +
+                        "  -logfile [file] : Write the log to [file] instead of the console, in a compact binary format\n" +
+                        "      if the name ends in .bin\n" +
+                        "  -metrics [file|-] : Write the waiting, turnaround and response time percentiles and the\n" +
+                        "      throughput as JSON to [file], - for the console\n" +
+                        "  -sweep [file|-] : Run every combination of the -scheduler, -cpus, -quantum and -seed values,\n" +
+                        "      which can each be a list like rr,fcfs or 1,2,4 or a range like 1-100, without logging,\n" +
+                        "      and write one CSV line of results per run to [file], - for the console; each list can\n" +
+                        "      have up to 1000000 values\n" +
+                        "  -threads [n] : Number of simulations a sweep runs at once; valid range [1, 2147483647]");
+                return;
+            }
+        }
+
+        if (sweepFile != null) {
+            runSweep(schedulerNames, cpuCounts, quanta, seeds, traceFile, count, meanInterarrival, bursts, meanBurst,
+                    sweepFile, threads);
+            return;
+        }
+        if (schedulerNames.length > 1 || cpuCounts.length > 1 || quanta.length > 1 || seeds.length > 1) {
+            System.out.println("Lists of values are only for -sweep");
+            return;
+        }
+        String schedulerName = schedulerNames[0];
+        int cpuCount = (int) cpuCounts[0];
+        try {
+            Workload workload = traceFile == null
+                    ? new SyntheticWorkload(count, meanInterarrival, bursts, meanBurst, seeds[0])
+                    : openTrace(Paths.get(traceFile));
+            if (writeTrace != null) {
+                long written = BinaryTrace.write(workload, Paths.get(writeTrace));
+                System.out.printf("Wrote %d processes to %s\n", written, writeTrace);
+                return;
+            }
+            Platform platform = new Platform(cpuCount);
+            Scheduler scheduler = newScheduler(schedulerName, platform, (int) quanta[0]);
+            System.out.printf("Starting %s CPU scheduling simulation on %d CPUs\n", schedulerName.toUpperCase(), cpuCount);
+            if (logFile == null) {
+                platform.logTo(logLevel, System.out, false);
+                platform.simulate(scheduler, workload);
+            }
+            else {
+                try (OutputStream log = new FileOutputStream(logFile)) {
+                    platform.logTo(logLevel, log, logFile.endsWith(".bin"));
+                    platform.simulate(scheduler, workload);
+                }
+            }
+            System.out.printf("Number of context switches: %d\n", scheduler.getNumberOfContextSwitches());
+            System.out.printf("%s CPU scheduling simulation complete\n", schedulerName.toUpperCase());
+            if (metricsFile != null) {
+                writeMetrics(platform.getMetrics(), metricsFile);
+            }
+        }
+        catch (IOException | UncheckedIOException | IllegalArgumentException e) {
+            System.out.printf("Could not read the processes: %s\n", e.getMessage());
+        }
+    }
+
+    /**
+     * Writes a simulation's metrics as JSON to a file, or to the console for -.
+     */
+    private static void writeMetrics(SchedulingMetrics metrics, String metricsFile) throws IOException {
+        if (metricsFile.equals("-")) {
+            System.out.println(metrics.toJson());
+            return;
+        }
+        try (PrintStream out = new PrintStream(new FileOutputStream(metricsFile))) {
+            out.println(metrics.toJson());
+        }
+    }
+
+    /**
+     * Runs a sweep over every combination of the values and writes its results.
+     */
+    private static void runSweep(String[] schedulerNames, long[] cpuCounts, long[] quanta, long[] seeds,
+                                 String traceFile, long count, double meanInterarrival, String bursts,
+                                 double meanBurst, String sweepFile, int threads) {
+        Sweep sweep = new Sweep(schedulerNames, toInts(cpuCounts), toInts(quanta), seeds,
+                traceFile == null ? null : Paths.get(traceFile), count, meanInterarrival, bursts, meanBurst);
+        long timeStart = System.currentTimeMillis();
+        try {
+            sweep.run(threads);
+        }
+        catch (IOException | UncheckedIOException | IllegalArgumentException e) {
+            System.out.printf("Could not read the processes: %s\n", e.getMessage());
+            return;
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        long timeEnd = System.currentTimeMillis();
+        if (sweepFile.equals("-")) {
+            sweep.writeCsv(System.out);
+        }
+        else {
+            try (PrintStream out = new PrintStream(new FileOutputStream(sweepFile))) {
+                sweep.writeCsv(out);
+            }
+            catch (IOException e) {
+                System.out.printf("Could not write %s: %s\n", sweepFile, e.getMessage());
+                return;
+            }
+        }
+        System.err.printf("Ran %d simulations on %d threads in %.2f sec\n", sweep.size(), threads,
+                (timeEnd - timeStart) / 1000.0);
+    }
+
+    /**
+     * Parses a comma separated list of numbers and ranges, e.g. 1,2,8-10 for 1, 2, 8, 9 and 10.
+     * @throws IllegalArgumentException if any number is outside [min, max], or the list has more than
+     *         MAX_LIST_VALUES values
+     */
+    private static long[] parseNumbers(String text, long min, long max) {
+        List<Long> numbers = new ArrayList<>();
+        for (String part : text.split(",")) {
+            int dash = part.indexOf('-', 1);
+            long first = Long.parseLong(dash < 0 ? part : part.substring(0, dash));
+            long last = dash < 0 ? first : Long.parseLong(part.substring(dash + 1));
+            if (first < min || last > max || first > last) {
+                throw new IllegalArgumentException(String.format("%s isn't inside [%d, %d]", part, min, max));
+            }
+            // last - first can be past Long.MAX_VALUE, but as an unsigned number it is still exact
+            if (Long.compareUnsigned(last - first, MAX_LIST_VALUES - 1 - numbers.size()) > 0) {
+                throw new IllegalArgumentException(String.format("%s has more than %d values", text,
+                        MAX_LIST_VALUES));
+            }
+            // Stop on last itself, since a range ending at Long.MAX_VALUE has no n past it
+            for (long n = first; ; n++) {
+                numbers.add(n);
+                if (n == last) {
+                    break;
+                }
+            }
+        }
+        long[] parsed = new long[numbers.size()];
+        for (int i = 0; i < parsed.length; i++) {
+            parsed[i] = numbers.get(i);
+        }
+        return parsed;
+    }
+
+    private static int[] toInts(long[] numbers) {
+        int[] ints = new int[numbers.length];
+        for (int i = 0; i < numbers.length; i++) {
+            ints[i] = (int) numbers[i];
+        }
+        return ints;
+    }
+
+    /**
+     * Opens a trace file, CSV if its name ends in .csv and binary otherwise.
+     */
+    public static Workload openTrace(Path path) throws IOException {
+        return path.toString().endsWith(".csv") ? new CsvTrace(path) : new BinaryTrace(path);
+    }
+
+    /**
+     * Makes the scheduler with the given name, one of SCHEDULERS, reporting to the platform.
+     */
+    public static Scheduler newScheduler(String name, Platform platform, int quantum) {
+        switch (name) {
+            case "sjf": return new SchedulerSJF(platform);
+            case "srtf": return new SchedulerSRTF(platform);
+            case "priority": return new SchedulerPriority(platform);
+            case "rr": return new SchedulerRR(platform, quantum);
+            default: return new SchedulerFCFS(platform);
+        }
+    }
 }
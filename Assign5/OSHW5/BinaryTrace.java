@@ -0,0 +1,77 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * @author Benjamin Taylor
+ *
+ * Reads processes from a compact binary trace: a 4 byte tag, then 16 bytes per process holding its start
+ * time, burst time, total time and priority as big-endian ints. Names aren't stored; the processes are
+ * named P1, P2, ... in the order they are in the file, which must be the order of their start times.
+ */
+public class BinaryTrace extends MappedTrace {
+    private static final int MAGIC = 0x53434844;    // "SCHD"
+    private static final int RECORD_SIZE = 16;
+
+    private long count = 0;
+
+    public BinaryTrace(Path path) throws IOException {
+        super(path);
+        if (window.remaining() < Integer.BYTES || window.getInt() != MAGIC) {
+            throw new IOException(path + " is not a binary scheduling trace");
+        }
+    }
+
+    // Reads the next record, moving the window along when the record runs past it
+    protected Process read() {
+        if (window.remaining() < RECORD_SIZE && !windowAtEnd()) {
+            slideWindow();
+        }
+        if (window.remaining() < RECORD_SIZE) {
+            return null;
+        }
+        count++;
+        int startTime = window.getInt();
+        int burstTime = window.getInt();
+        int totalTime = window.getInt();
+        String problem = check(startTime, burstTime, totalTime);
+        if (problem != null) {
+            throw new IllegalArgumentException(String.format("Record %d of %s has %s", count, getPath(), problem));
+        }
+        return new Process("P" + count, startTime, burstTime, totalTime, window.getInt());
+    }
+
+    /**
+     * Writes every process left in a workload to a binary trace, e.g. to turn a generated workload or
+     * a CSV trace into one that is quicker to read.
+     * @return How many processes were written
+     */
+    public static long write(Workload workload, Path path) throws IOException {
+        long written = 0;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE << 12);
+            buffer.putInt(MAGIC);
+            Process p;
+            while ((p = workload.next()) != null) {
+                if (buffer.remaining() < RECORD_SIZE) {
+                    drain(channel, buffer);
+                }
+                buffer.putInt(p.getStartTime()).putInt(p.getBurstTime()).putInt(p.getTotalTime()).putInt(p.getPriority());
+                written++;
+            }
+            drain(channel, buffer);
+        }
+        return written;
+    }
+
+    private static void drain(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
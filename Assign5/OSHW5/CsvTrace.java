@@ -0,0 +1,114 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+/**
+ * @author Benjamin Taylor
+ *
+ * Reads processes from a CSV trace, one per line as name,startTime,burstTime,totalTime with an optional
+ * fifth column for the priority. Blank lines and lines starting with # are skipped. The lines must be
+ * in order of start time, the same as the queue handed to the platform, and each process's total time
+ * must be a whole number of its bursts.
+ */
+public class CsvTrace extends MappedTrace {
+    private final int[] fields = new int[4];
+    private int lineNumber = 0;
+
+    public CsvTrace(Path path) throws IOException {
+        super(path);
+    }
+
+    /**
+     * Finds the end of the next line in the window, sliding the window along if the line runs past it,
+     * and parses the line in place.
+     */
+    protected Process read() {
+        while (true) {
+            int start = window.position();
+            int end = start;
+            while (end < window.limit() && window.get(end) != '\n') {
+                end++;
+            }
+            if (end == window.limit() && !windowAtEnd()) {
+                if (!slideWindow()) {
+                    throw new IllegalArgumentException(String.format("Line %d of %s is too long", lineNumber + 1,
+                            getPath()));
+                }
+                continue;
+            }
+            if (start == end && end == window.limit()) {
+                return null;
+            }
+            window.position(Math.min(end + 1, window.limit()));
+            lineNumber++;
+            if (window.get(start) != '#' && !isBlank(start, end)) {
+                return parse(start, end);
+            }
+        }
+    }
+
+    private Process parse(int start, int end) {
+        fields[3] = 0;
+        int comma = start;
+        while (comma < end && window.get(comma) != ',') {
+            comma++;
+        }
+        String name = text(start, comma).trim();
+        int column = 0;
+        int position = comma + 1;
+        while (position < end && column < fields.length) {
+            int next = position;
+            while (next < end && window.get(next) != ',') {
+                next++;
+            }
+            fields[column++] = number(position, next);
+            position = next + 1;
+        }
+        if (comma >= end || column < 3 || position < end) {
+            throw new IllegalArgumentException(String.format("Line %d of %s should be name,start,burst,total[,priority]",
+                    lineNumber, getPath()));
+        }
+        String problem = check(fields[0], fields[1], fields[2]);
+        if (problem != null) {
+            throw new IllegalArgumentException(String.format("Line %d of %s has %s", lineNumber, getPath(), problem));
+        }
+        return new Process(name, fields[0], fields[1], fields[2], fields[3]);
+    }
+
+    // Parses a non-negative number between two offsets, ignoring spaces and a trailing carriage return
+    private int number(int start, int end) {
+        long value = 0;
+        int digits = 0;
+        for (int i = start; i < end; i++) {
+            byte b = window.get(i);
+            if (b >= '0' && b <= '9' && value <= Integer.MAX_VALUE) {
+                value = value * 10 + (b - '0');
+                digits++;
+            }
+            else if (b != ' ' && b != '\r') {
+                digits = -1;
+                break;
+            }
+        }
+        if (digits <= 0 || value > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(String.format("Bad number \"%s\" on line %d of %s", text(start, end).trim(),
+                    lineNumber, getPath()));
+        }
+        return (int) value;
+    }
+
+    private boolean isBlank(int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (window.get(i) != ' ' && window.get(i) != '\r') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String text(int start, int end) {
+        byte[] bytes = new byte[end - start];
+        window.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
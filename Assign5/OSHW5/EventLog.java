@@ -0,0 +1,215 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * @author Benjamin Taylor
+ *
+ * A log the simulation hands its events to without waiting on the output. Events go into a ring of
+ * fixed slots, each holding an event code, a time and the process, so adding one allocates nothing.
+ * A writer thread drains the ring in batches and writes them out as one of:
+ *   text - "Time %3d : message" lines, the same as the platform has always printed
+ *   binary - a 4 byte tag, then per event a 1 byte code (the LogEvent ordinal), a 4 byte time and a
+ *            4 byte pid, all big-endian; a MESSAGE event is followed by its text as a 2 byte length
+ *            and UTF-8 bytes
+ * Process names and messages are cut to MAX_TEXT characters, so a line or record always fits the
+ * writer's buffer and a message's length fits its 2 bytes.
+ * The ring only has one thread adding to it and one draining it, so the two only share the volatile
+ * counts of events added and taken. If the writer falls a whole ring behind, the simulation waits for
+ * it rather than lose events.
+ */
+public class EventLog implements Runnable {
+    private static final int MAGIC = 0x5343484C;    // "SCHL"
+    private static final int CAPACITY = 1 << 16;
+    private static final int MASK = CAPACITY - 1;
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final long IDLE_NANOS = 100_000;
+    private static final int MAX_TEXT = 8192;     // at most 3 UTF-8 bytes a character, well inside both limits
+    private static final LogEvent[] EVENTS = LogEvent.values();
+
+    private final OutputStream out;
+    private final boolean binary;
+
+    // The ring; slot i % CAPACITY holds event i
+    private final int[] codes = new int[CAPACITY];
+    private final int[] times = new int[CAPACITY];
+    private final Object[] subjects = new Object[CAPACITY];
+    private volatile long added = 0;
+    private volatile long taken = 0;
+    private volatile boolean closed = false;
+
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private final Thread writer;
+    private Thread producer;
+    private volatile Throwable failure;
+
+    /**
+     * Starts the writer thread.
+     * @param out Where the events are written; it is flushed when the log is closed but left open
+     * @param binary Whether to write the binary format instead of text
+     */
+    public EventLog(OutputStream out, boolean binary) {
+        this.out = out;
+        this.binary = binary;
+        if (binary) {
+            this.buffer.putInt(MAGIC);
+        }
+        this.writer = new Thread(this, "event log writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Adds an event, waiting only if the writer is a whole ring behind. Once the writer has failed, for
+     * any reason, events are dropped and the failure is thrown from close().
+     * @param subject The process the event is about, or the text of a MESSAGE event
+     */
+    public void add(LogEvent event, int time, Object subject) {
+        long next = this.added;
+        while (next - this.taken == CAPACITY && this.failure == null) {
+            this.producer = Thread.currentThread();
+            LockSupport.unpark(this.writer);
+            LockSupport.parkNanos(IDLE_NANOS);
+        }
+        if (this.failure != null) {
+            return;
+        }
+        int slot = (int) next & MASK;
+        this.codes[slot] = event.ordinal();
+        this.times[slot] = time;
+        this.subjects[slot] = subject;
+        this.added = next + 1;
+    }
+
+    /**
+     * Waits for every event added so far to be written and the output flushed, then stops the writer.
+     */
+    public void close() {
+        this.closed = true;
+        LockSupport.unpark(this.writer);
+        try {
+            this.writer.join();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (this.failure instanceof IOException) {
+            throw new UncheckedIOException((IOException) this.failure);
+        }
+        if (this.failure instanceof RuntimeException) {
+            throw (RuntimeException) this.failure;
+        }
+        if (this.failure != null) {
+            throw (Error) this.failure;
+        }
+    }
+
+    // Drain the ring until it is closed and empty. Anything that stops the writer is kept as the failure,
+    // so the simulation never waits on a writer that is gone
+    public void run() {
+        try {
+            while (true) {
+                boolean wasClosed = this.closed;
+                long end = this.added;
+                long start = this.taken;
+                if (start == end) {
+                    if (wasClosed) {
+                        break;
+                    }
+                    drain();
+                    LockSupport.parkNanos(IDLE_NANOS);
+                    continue;
+                }
+                for (long i = start; i < end; i++) {
+                    int slot = (int) i & MASK;
+                    write(EVENTS[this.codes[slot]], this.times[slot], this.subjects[slot]);
+                    this.subjects[slot] = null;
+                }
+                this.taken = end;
+                if (this.producer != null) {
+                    LockSupport.unpark(this.producer);
+                }
+            }
+            drain();
+            this.out.flush();
+        }
+        catch (Throwable e) {
+            this.failure = e;
+        }
+    }
+
+    private void write(LogEvent event, int time, Object subject) throws IOException {
+        if (this.binary) {
+            String text = subject instanceof Process ? null : clip(String.valueOf(subject));
+            byte[] bytes = text == null ? null : text.getBytes(StandardCharsets.UTF_8);
+            room(9 + (bytes == null ? 0 : 2 + bytes.length));
+            this.buffer.put((byte) event.ordinal()).putInt(time);
+            if (bytes == null) {
+                this.buffer.putInt(((Process) subject).getPid());
+            }
+            else {
+                this.buffer.putInt(-1).putShort((short) bytes.length).put(bytes);
+            }
+            return;
+        }
+        String name = clip(subject instanceof Process ? ((Process) subject).getName() : String.valueOf(subject));
+        room(16 + 3 * (event.getPrefix().length() + name.length() + event.getSuffix().length()));
+        // Time %3d : message
+        put("Time ");
+        putNumber(time, 3);
+        put(" : ");
+        put(event.getPrefix());
+        put(name);
+        put(event.getSuffix());
+        this.buffer.put((byte) '\n');
+    }
+
+    private static String clip(String text) {
+        return text.length() <= MAX_TEXT ? text : text.substring(0, MAX_TEXT);
+    }
+
+    // Copies text into the buffer, plain ASCII one byte each
+    private void put(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= 0x80) {
+                this.buffer.put(text.substring(i).getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            this.buffer.put((byte) c);
+        }
+    }
+
+    // Copies a non-negative number into the buffer, padded with spaces on the left to the given width
+    private void putNumber(int n, int width) {
+        int place = 1;
+        int digits = 1;
+        while (n / place >= 10) {
+            place *= 10;
+            digits++;
+        }
+        for (; digits < width; digits++) {
+            this.buffer.put((byte) ' ');
+        }
+        for (; place > 0; place /= 10) {
+            this.buffer.put((byte) ('0' + n / place % 10));
+        }
+    }
+
+    // Makes sure the buffer has room for the given number of bytes
+    private void room(int bytes) throws IOException {
+        if (this.buffer.remaining() < bytes) {
+            drain();
+        }
+    }
+
+    private void drain() throws IOException {
+        if (this.buffer.position() > 0) {
+            this.out.write(this.buffer.array(), 0, this.buffer.position());
+            this.buffer.clear();
+        }
+    }
+}
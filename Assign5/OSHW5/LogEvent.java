@@ -0,0 +1,32 @@
+/**
+ * @author Benjamin Taylor
+ *
+ * The events a scheduler reports. Each one is logged as its code, the time and the process, and only
+ * turned into text by the log's writer, so a scheduler never builds a message. The text is the same
+ * as the messages the schedulers used to build.
+ */
+public enum LogEvent {
+    SCHEDULED(LogLevel.DEBUG, " Scheduled: ", ""),
+    BURST_COMPLETE(LogLevel.DEBUG, " Process ", " burst complete"),
+    EXECUTION_COMPLETE(LogLevel.INFO, " Process ", " execution complete"),
+    PREEMPTED(LogLevel.DEBUG, " Preemptively removed: ", ""),
+    QUANTUM_COMPLETE(LogLevel.DEBUG, " Time quantum complete for process ", ""),
+    // A message built by the caller, for anything without its own event
+    MESSAGE(LogLevel.INFO, "", "");
+
+    private final LogLevel level;
+    private final String prefix;
+    private final String suffix;
+
+    LogEvent(LogLevel level, String prefix, String suffix) {
+        this.level = level;
+        this.prefix = prefix;
+        this.suffix = suffix;
+    }
+
+    public LogLevel getLevel() { return this.level; }
+
+    // The text before and after the process name
+    public String getPrefix() { return this.prefix; }
+    public String getSuffix() { return this.suffix; }
+}
@@ -0,0 +1,20 @@
+/**
+ * @author Benjamin Taylor
+ *
+ * How much of the simulation is logged. Each level logs its own events and those of the levels before it.
+ *   OFF - nothing, and the schedulers' calls to log cost a comparison
+ *   INFO - processes completing their execution
+ *   DEBUG - every scheduling decision, which is what the simulation has always printed
+ */
+public enum LogLevel {
+    OFF,
+    INFO,
+    DEBUG;
+
+    public static final String NAMES = "off|info|debug";
+
+    // Whether an event at the given level is logged at this one
+    public boolean logs(LogLevel event) {
+        return event.ordinal() <= this.ordinal() && event != OFF;
+    }
+}
@@ -3,4 +3,10 @@
  */
 public interface Logger {
     void log(String message);
+
+    /**
+     * Reports a scheduling event about a process.  Nothing is formatted by the caller, so an event
+     * that isn't logged at the current level costs next to nothing.
+     */
+    void log(LogEvent event, Process p);
 }
@@ -0,0 +1,83 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * @author Benjamin Taylor
+ *
+ * A trace file read through memory mapping, a window of the file at a time so that traces bigger
+ * than what a single mapping can hold still work. The trace formats read their records straight out
+ * of the window and move it along when a record doesn't fit in what is left of it.
+ */
+public abstract class MappedTrace extends WorkloadBase {
+    private static final long WINDOW_SIZE = 1L << 28;
+
+    private final Path path;
+    private final long size;
+    private long windowStart;
+    private int lastStartTime = 0;
+    protected MappedByteBuffer window;
+
+    protected MappedTrace(Path path) throws IOException {
+        this.path = path;
+        this.size = Files.size(path);
+        map(0);
+    }
+
+    /**
+     * Maps the part of the file starting at the given offset, with the window's position at its start.
+     */
+    protected void map(long offset) {
+        try (FileChannel channel = FileChannel.open(this.path, StandardOpenOption.READ)) {
+            this.window = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(WINDOW_SIZE, this.size - offset));
+            this.windowStart = offset;
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Moves the window so it starts at its current position, when a record doesn't fit in the rest of it.
+     * @return false if the window already starts there, which means the record is bigger than a window
+     */
+    protected boolean slideWindow() {
+        if (this.window.position() == 0) {
+            return false;
+        }
+        map(this.windowStart + this.window.position());
+        return true;
+    }
+
+    /**
+     * Checks the numbers of a process read from the trace. Ones the simulation can't finish are turned
+     * away here rather than left to spin forever: a burst of less than one clock count, or a total time
+     * that isn't a whole number of bursts. So is a start time before the one of the process above it,
+     * since the processes have to come in order.
+     * @return What is wrong with the process, or null if it can be simulated
+     */
+    protected String check(int startTime, int burstTime, int totalTime) {
+        if (startTime < this.lastStartTime) {
+            return startTime < 0 ? "a negative start time" : "a start time before the one above it";
+        }
+        if (burstTime <= 0) {
+            return "a burst time below 1";
+        }
+        if (totalTime <= 0 || totalTime % burstTime != 0) {
+            return "a total time that isn't a whole number of bursts";
+        }
+        this.lastStartTime = startTime;
+        return null;
+    }
+
+    // Whether the window runs all the way to the end of the file
+    protected boolean windowAtEnd() {
+        return this.windowStart + this.window.limit() == this.size;
+    }
+
+    protected Path getPath() { return this.path; }
+}
@@ -1,3 +1,4 @@
+import java.io.OutputStream;
 import java.util.Queue;
 
 /**
@@ -9,22 +10,77 @@ public class Platform implements Logger {
     private int cpuCount;
     private Process[] running;
     private int clockCounter;
+    private LogLevel logLevel = LogLevel.DEBUG;
+    private OutputStream logOut = System.out;
+    private boolean binaryLog = false;
+    private EventLog eventLog;          // only while simulating with logging on
+    private SchedulingMetrics metrics;
 
     public Platform(int cpuCount) {
         this.cpuCount = cpuCount;
     }
 
+    /**
+     * Overloaded constructor that can turn the log off, for running many simulations where only the
+     * results matter.
+     */
+    public Platform(int cpuCount, boolean logging) {
+        this(cpuCount);
+        this.logLevel = logging ? LogLevel.DEBUG : LogLevel.OFF;
+    }
+
+    /**
+     * Sets how much is logged and where to.  By default every event is logged as text to the console.
+     * @param out Where the log goes; it is flushed after each simulation but never closed
+     * @param binary Whether to log in EventLog's binary format instead of text
+     */
+    public void logTo(LogLevel level, OutputStream out, boolean binary) {
+        this.logLevel = level;
+        this.logOut = out;
+        this.binaryLog = binary;
+    }
+
     /**
      * This is the core of the platform simulation.  It advances by 1 clock count each time
-     * through the loop.
+     * through the loop, except that after a clock count where nothing happened it jumps straight
+     * to the next one where something can: a process arriving, or the scheduler's next look at a
+     * running process.  The clock counts in between would all do nothing, so the log and the
+     * context switches come out the same, but the time taken depends on the number of events
+     * rather than on how long the simulation runs.
      * @param processes
      */
     public void simulate(Scheduler scheduler, Queue<Process> processes) {
+        simulate(scheduler, Workload.of(processes));
+    }
+
+    /**
+     * Same as above, but the processes are taken from the workload as they arrive, so a trace or a
+     * generated workload never has to be held in memory all at once.
+     */
+    public void simulate(Scheduler scheduler, Workload processes) {
         this.running = new Process[cpuCount];
         this.clockCounter = 0;
+        this.metrics = new SchedulingMetrics();
+        // Events are written by the log's own thread, so the simulation never waits on the output
+        this.eventLog = this.logLevel == LogLevel.OFF ? null : new EventLog(this.logOut, this.binaryLog);
+        try {
+            run(scheduler, processes);
+        }
+        finally {
+            if (this.eventLog != null) {
+                this.eventLog.close();
+                this.eventLog = null;
+            }
+        }
+        metrics.finish(clockCounter, scheduler.getNumberOfContextSwitches());
+    }
 
+    // The clock loop itself
+    private void run(Scheduler scheduler, Workload processes) {
         boolean done = simulationDone(processes);;
         while (!done) {
+            int contextSwitches = scheduler.getNumberOfContextSwitches();
+            boolean changed = false;
             //
             // Look at the queue of incoming processes and see if any of those need to be added to scheduler
             // as newly ready processes.
@@ -32,8 +88,11 @@ public class Platform implements Logger {
             while (!doneAdding) {
                 Process p = processes.peek();
                 if (p != null && p.getStartTime() <= clockCounter) {
+                    p.arrive(clockCounter, (int) metrics.getArrived() + 1);
+                    metrics.arrived(p);
                     scheduler.notifyNewProcess(p);
-                    processes.remove();
+                    processes.next();
+                    changed = true;
                 }
                 else {
                     doneAdding = true;
@@ -43,35 +102,111 @@ public class Platform implements Logger {
             //
             // For each CPU, update the state of the running process.
             for (int cpu = 0; cpu < this.cpuCount; cpu++) {
-                if (this.running[cpu] != null) {
-                    this.running[cpu].update();
+                Process previous = this.running[cpu];
+                if (previous != null) {
+                    previous.update();
+                }
+                this.running[cpu] = scheduler.update(previous);
+                if (this.running[cpu] != previous) {
+                    changed = true;
+                    recordSwitch(previous, this.running[cpu]);
                 }
-                this.running[cpu] = scheduler.update(this.running[cpu]);
             }
+            changed = changed || scheduler.getNumberOfContextSwitches() != contextSwitches;
             clockCounter++;
 
+            //
+            // Anything that changed this time can change what the scheduler does next time, even on a CPU
+            // it already updated, so only skip ahead after a clock count where nothing did.
+            if (!changed) {
+                skipToNextEvent(scheduler, processes);
+            }
+
             done = simulationDone(processes);
         }
     }
 
+    /**
+     * Keeps the times of the processes coming off and going on a CPU for the metrics.
+     */
+    private void recordSwitch(Process previous, Process next) {
+        if (previous != null && previous.isExecutionComplete()) {
+            previous.complete(clockCounter);
+            metrics.completed(previous);
+        }
+        if (next != null) {
+            next.run(clockCounter);
+        }
+    }
+
+    /**
+     * Moves the clock and the running processes forward to the next clock count where something can
+     * happen, the same as running every clock count in between.
+     */
+    private void skipToNextEvent(Scheduler scheduler, Workload processes) {
+        long next = Long.MAX_VALUE;
+        Process arriving = processes.peek();
+        if (arriving != null) {
+            next = Math.max(arriving.getStartTime(), clockCounter);
+        }
+        for (Process p : this.running) {
+            if (p != null) {
+                next = Math.min(next, clockCounter - 1L + scheduler.ticksUntilUpdate(p));
+            }
+        }
+        if (next == Long.MAX_VALUE || next <= clockCounter) {
+            return;
+        }
+        int skipped = (int) (next - clockCounter);
+        for (Process p : this.running) {
+            if (p != null) {
+                p.advance(skipped);
+            }
+        }
+        clockCounter += skipped;
+    }
+
     /**
      * If there are no processes left in the list of processes and all of the CPUs have no
      * running processes, then we are done with the simulation.
      */
-    private boolean simulationDone(Queue<Process> processes) {
+    private boolean simulationDone(Workload processes) {
         boolean allEmpty = true;
         for (Process p : this.running) {
             if (p != null) {
                 allEmpty = false;
             }
         }
-        return allEmpty && processes.size() == 0;
+        return allEmpty && processes.peek() == null;
     }
 
     /**
      * Implementation of the Logger interface.  Schedulers use this interface to report events.
      */
     public void log(String message) {
-        System.out.printf("Time %3d : %s\n", this.clockCounter, message);
+        if (this.logLevel.logs(LogEvent.MESSAGE.getLevel())) {
+            if (this.eventLog != null) {
+                this.eventLog.add(LogEvent.MESSAGE, this.clockCounter, message);
+            }
+            else {
+                System.out.printf("Time %3d : %s\n", this.clockCounter, message);
+            }
+        }
+    }
+
+    public void log(LogEvent event, Process p) {
+        if (this.eventLog != null && this.logLevel.logs(event.getLevel())) {
+            this.eventLog.add(event, this.clockCounter, p);
+        }
     }
+
+    /**
+     * @return The clock count the simulation is at; once it is done, the one after the last process finished
+     */
+    public int getClockCounter() { return this.clockCounter; }
+
+    /**
+     * @return The waiting, turnaround and response times of the last simulation, and its throughput
+     */
+    public SchedulingMetrics getMetrics() { return this.metrics; }
 }
@@ -11,6 +11,10 @@ public class Process {
     private int elapsedBurst = 0;   // How long the current burst has executed
     private int elapsedTotal = 0;   // How long, in total, the process has executed
     private int priority = 0;       // Priority of the process, smaller number is higher priority
+    private int pid = -1;               // Numbers the processes in order of arrival, from 1, for the event log
+    private int arrivalTime = -1;       // When the platform handed it to the scheduler
+    private int firstRunTime = -1;      // When it was first put on a CPU
+    private int completionTime = -1;    // When its execution completed
 
     public Process(String name,int startTime, int burstTime, int totalTime) {
         this.name = name;
@@ -41,6 +45,18 @@ public class Process {
         return !(this.elapsedTotal == this.totalTime);
     }
 
+    /**
+     * Same as calling update() the given number of times, for jumping over ticks where nothing happens.  The
+     * current burst must not complete before the last of them.
+     */
+    public void advance(int ticks) {
+        if (this.elapsedBurst == this.burstTime) {
+            this.elapsedBurst = 0;
+        }
+        this.elapsedBurst += ticks;
+        this.elapsedTotal += ticks;
+    }
+
     /**
      * @return true if current burst has completed, false otherwise
      */
@@ -55,6 +71,27 @@ public class Process {
         return this.elapsedTotal == this.totalTime;
     }
 
+    /**
+     * Record keeping for the scheduling metrics, done by the platform as the simulation runs.
+     */
+    public void arrive(int time, int pid) {
+        this.arrivalTime = time;
+        this.pid = pid;
+    }
+    public void run(int time) {
+        if (this.firstRunTime < 0) {
+            this.firstRunTime = time;
+        }
+    }
+    public void complete(int time) { this.completionTime = time; }
+
+    /**
+     * @return How long the process was ready but not running, from its arrival until it completed
+     */
+    public int getWaitTime() {
+        return this.completionTime - this.arrivalTime - this.elapsedTotal;
+    }
+
     /**
      * Various getters for the state of the process.
      */
@@ -66,4 +103,8 @@ public class Process {
     public int getPriority() { return this.priority; }
     public int getElapsedBurst() { return this.elapsedBurst; }
     public int getRemainingBurst() { return this.burstTime - this.elapsedBurst; }
+    public int getPid() { return this.pid; }
+    public int getArrivalTime() { return this.arrivalTime; }
+    public int getFirstRunTime() { return this.firstRunTime; }
+    public int getCompletionTime() { return this.completionTime; }
 }
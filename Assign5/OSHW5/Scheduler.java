@@ -20,4 +20,11 @@ public interface Scheduler {
      *         if no process available for scheduling.
      */
     Process update(Process cpu);
+
+    /**
+     * Used by the platform to skip ahead while nothing is happening.  Only asked about a process that was just
+     * updated without the scheduler doing anything, when the ready processes stay the same until then.
+     * @return How many ticks from now the scheduler could next act on the process running on a CPU
+     */
+    int ticksUntilUpdate(Process cpu);
 }
@@ -8,4 +8,11 @@ public class SchedulerBase {
     protected int contextSwitches = 0;
 
     public int getNumberOfContextSwitches() { return this.contextSwitches; }
+
+    /**
+     * Left alone, a running process is only looked at again when its burst completes.  Preemptive
+     * schedulers don't need more than that: the ready processes they compare against don't change
+     * until something else happens, and the running process only gets closer to done.
+     */
+    public int ticksUntilUpdate(Process cpu) { return cpu.getRemainingBurst(); }
 }
@@ -0,0 +1,126 @@
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.function.Function;
+
+/**
+ * @author Benjamin Taylor
+ *
+ * Replays the small workloads that used to lose or duplicate processes in SRTF, Priority and RR, and
+ * checks that every process now runs on at most one CPU at a time and completes.  The schedulers
+ * re-queued a process whose burst finished and then polled, expecting the process they had peeked
+ * before: with nothing else ready that polled the current process back out and lost it, and when the
+ * re-queued process sorted first the peeked one ran while still queued.  Priority could also preempt
+ * a process on the tick its burst finished, which re-queued it past its total time so it never
+ * completed.  There are no test classes in this project, so this runs from the command line and exits
+ * with 1 if any case fails.
+ *
+ * Run with: java SchedulerCheck
+ */
+public class SchedulerCheck {
+    // Far more rounds than any of the cases needs; a case still running by then never completes
+    private static final int MAX_ROUNDS = 100000;
+
+    public static void main(String[] args) {
+        int failures = 0;
+
+        // The only ready process finishes a burst with more to run, so it has to go straight back on
+        failures += check("srtf, one process", 1, SchedulerSRTF::new,
+                new Process("A", 0, 2, 4));
+        failures += check("priority, one process", 1, SchedulerPriority::new,
+                new Process("A", 0, 2, 4, 1));
+        failures += check("rr, one process", 1, platform -> new SchedulerRR(platform, 4),
+                new Process("A", 0, 2, 4));
+
+        // A finishes its first burst with no burst left, so it sorts ahead of the peeked C when re-queued
+        failures += check("srtf, re-queued first", 2, SchedulerSRTF::new,
+                new Process("A", 0, 2, 4), new Process("B", 0, 5, 5), new Process("C", 0, 6, 6));
+        // A outranks the peeked B when it goes back in after its first burst
+        failures += check("priority, re-queued first", 1, SchedulerPriority::new,
+                new Process("A", 0, 2, 4, 1), new Process("B", 0, 1, 1, 2));
+        failures += check("priority, re-queued first", 2, SchedulerPriority::new,
+                new Process("A", 0, 2, 4, 1), new Process("B", 0, 5, 5, 2), new Process("C", 0, 6, 6, 3));
+
+        // B outranks A and arrives around the tick A's only burst finishes
+        for (int arrival = 1; arrival <= 5; arrival++) {
+            failures += check(String.format("priority, B arrives at %d", arrival), 1, SchedulerPriority::new,
+                    new Process("A", 0, 3, 3, 2), new Process("B", arrival, 1, 1, 1));
+        }
+
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Simulates the processes with the log off and reports whether they all ran as they should.
+     * @return 1 if the case failed, 0 if it passed
+     */
+    private static int check(String name, int cpus, Function<Platform, Scheduler> newScheduler,
+                             Process... processes) {
+        Platform platform = new Platform(cpus, false);
+        Queue<Process> queue = new LinkedList<>();
+        for (Process p : processes) {
+            queue.add(p);
+        }
+        String failure;
+        try {
+            platform.simulate(new Watcher(newScheduler.apply(platform), cpus), queue);
+            failure = null;
+            for (Process p : processes) {
+                if (!p.isExecutionComplete() || p.getCompletionTime() < 0) {
+                    failure = String.format("%s ran %d of %d and never completed", p.getName(),
+                            p.getElapsedTotal(), p.getTotalTime());
+                    break;
+                }
+            }
+        }
+        catch (IllegalStateException e) {
+            failure = e.getMessage();
+        }
+        System.out.printf("%-28s %d cpu : %s\n", name, cpus, failure == null ? "ok" : failure);
+        return failure == null ? 0 : 1;
+    }
+
+    /**
+     * Passes everything on to the scheduler being checked.  The platform updates every CPU in turn each
+     * time around its loop, so every cpus calls to update make one round, and no process may come back
+     * for two CPUs in the same round.
+     */
+    private static class Watcher implements Scheduler {
+        private final Scheduler scheduler;
+        private final Process[] round;
+        private int cpu = 0;
+        private int rounds = 0;
+
+        Watcher(Scheduler scheduler, int cpus) {
+            this.scheduler = scheduler;
+            this.round = new Process[cpus];
+        }
+
+        public int getNumberOfContextSwitches() { return scheduler.getNumberOfContextSwitches(); }
+
+        public void notifyNewProcess(Process p) { scheduler.notifyNewProcess(p); }
+
+        public int ticksUntilUpdate(Process p) { return scheduler.ticksUntilUpdate(p); }
+
+        public Process update(Process p) {
+            Process next = scheduler.update(p);
+            for (int other = 0; other < cpu; other++) {
+                if (next != null && round[other] == next) {
+                    throw new IllegalStateException(String.format("%s ran on CPUs %d and %d at once",
+                            next.getName(), other, cpu));
+                }
+            }
+            round[cpu] = next;
+            cpu++;
+            if (cpu == round.length) {
+                cpu = 0;
+                rounds++;
+                if (rounds > MAX_ROUNDS) {
+                    throw new IllegalStateException(String.format("still running after %d rounds", MAX_ROUNDS));
+                }
+            }
+            return next;
+        }
+    }
+}
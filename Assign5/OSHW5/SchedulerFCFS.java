@@ -30,16 +30,20 @@ public class SchedulerFCFS extends SchedulerBase implements Scheduler {
         // If no process is running, start one
         if (cpu == null) {
             Process scheduleProcess = fcfsQueue.poll();
-            platform.log(" Scheduled: " + scheduleProcess.getName());
+            // nothing is ready, so the CPU stays idle
+            if (scheduleProcess == null) {
+                return null;
+            }
+            platform.log(LogEvent.SCHEDULED, scheduleProcess);
             this.contextSwitches++;
             return scheduleProcess;
         }
         // Check if the burst is complete to know whether to replace the process with the next in the queue
         if (cpu.isBurstComplete()) {
-            platform.log(" Process " + cpu.getName() + " burst complete");
+            platform.log(LogEvent.BURST_COMPLETE, cpu);
             // If the execution is complete, then log it
             if (cpu.isExecutionComplete()) {
-                platform.log(" Process " + cpu.getName() + " execution complete");
+                platform.log(LogEvent.EXECUTION_COMPLETE, cpu);
             }
             // if the execution is not complete, then re-add the process to the scheduler queue
             else {
@@ -50,7 +54,7 @@ public class SchedulerFCFS extends SchedulerBase implements Scheduler {
             Process scheduleProcess = fcfsQueue.poll();
             // if there is another process to schedule, then log the scheduling and add a context switch for it
             if (scheduleProcess != null) {
-                platform.log(" Scheduled: " + scheduleProcess.getName());
+                platform.log(LogEvent.SCHEDULED, scheduleProcess);
                 this.contextSwitches++;
             }
             return scheduleProcess;
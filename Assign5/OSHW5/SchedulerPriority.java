@@ -31,37 +31,49 @@ public class SchedulerPriority extends SchedulerBase implements Scheduler {
         // if no process is running, then start one
         if (cpu == null) {
             Process scheduleProcess = priorityQueue.poll();
-            platform.log(" Scheduled: " + scheduleProcess.getName());
+            // nothing is ready, so the CPU stays idle
+            if (scheduleProcess == null) {
+                return null;
+            }
+            platform.log(LogEvent.SCHEDULED, scheduleProcess);
             this.contextSwitches++;
             return scheduleProcess;
         }
         // take the next process in the queue and compare it to the currently running to know if the current running is the highest priority
         // since a higher priority may have been added to the queue while the current was running. Allows for preemption
+        // of a process that is still in its burst; one that just finished it is handled below like any other
         Process nextScheduled = priorityQueue.peek();
-        if (nextScheduled != null && cpu.getPriority() > nextScheduled.getPriority()) {
+        if (nextScheduled != null && !cpu.isBurstComplete() && cpu.getPriority() > nextScheduled.getPriority()) {
             priorityQueue.poll();
-            platform.log(" Preemptively removed: " + cpu.getName());
+            platform.log(LogEvent.PREEMPTED, cpu);
             this.contextSwitches++;
             priorityQueue.add(cpu);
 
-            platform.log(" Scheduled: " + nextScheduled.getName());
+            platform.log(LogEvent.SCHEDULED, nextScheduled);
             this.contextSwitches++;
             return nextScheduled;
         }
         // check if the current running process' burst/execution is complete and schedulet the next one if so
         if (cpu.isBurstComplete()) {
-            platform.log(" Process " + cpu.getName() + " burst complete");
+            platform.log(LogEvent.BURST_COMPLETE, cpu);
             if (cpu.isExecutionComplete()) {
-                platform.log(" Process " + cpu.getName() + " execution complete");
+                platform.log(LogEvent.EXECUTION_COMPLETE, cpu);
             }
             // if execution isn't complete then re add the current to the queue
             else {
                 priorityQueue.add(cpu);
             }
             this.contextSwitches++;
-            priorityQueue.poll();
+            // take out the process picked before the current one went back in; with nothing else ready, the
+            // current one goes again
+            if (nextScheduled == null) {
+                nextScheduled = priorityQueue.poll();
+            }
+            else {
+                priorityQueue.remove(nextScheduled);
+            }
             if (nextScheduled != null) {
-                platform.log(" Scheduled: " + nextScheduled.getName());
+                platform.log(LogEvent.SCHEDULED, nextScheduled);
                 this.contextSwitches++;
             }
             return nextScheduled;
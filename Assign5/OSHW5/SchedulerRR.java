@@ -23,6 +23,11 @@ public class SchedulerRR extends SchedulerBase implements Scheduler {
         this.rrQueue.add(p);
     }
 
+    // The process is looked at again when its burst completes or its time quantum runs out, whichever comes first
+    public int ticksUntilUpdate(Process cpu) {
+        return Math.min(cpu.getRemainingBurst(), this.timeQuantum - cpu.getElapsedBurst() % this.timeQuantum);
+    }
+
     /**
      * Starts a process if one is not running.
      *
@@ -33,7 +38,11 @@ public class SchedulerRR extends SchedulerBase implements Scheduler {
         // start a process if one is not running
         if (cpu == null) {
             Process scheduleProcess = rrQueue.poll();
-            platform.log(" Scheduled: " + scheduleProcess.getName());
+            // nothing is ready, so the CPU stays idle
+            if (scheduleProcess == null) {
+                return null;
+            }
+            platform.log(LogEvent.SCHEDULED, scheduleProcess);
             this.contextSwitches++;
             return scheduleProcess;
         }
@@ -42,15 +51,22 @@ public class SchedulerRR extends SchedulerBase implements Scheduler {
         // if the burst is complete re add the process to the queue, unless the execution is complete then start the next
         if (cpu.isBurstComplete()) {
             if (cpu.isExecutionComplete()) {
-                platform.log(" Process " + cpu.getName() + " execution complete");
+                platform.log(LogEvent.EXECUTION_COMPLETE, cpu);
             }
             else {
                 rrQueue.add(cpu);
             }
             this.contextSwitches++;
-            rrQueue.poll();
+            // take out the process picked before the current one went back in; with nothing else ready, the
+            // current one goes again
+            if (nextScheduled == null) {
+                nextScheduled = rrQueue.poll();
+            }
+            else {
+                rrQueue.remove(nextScheduled);
+            }
             if (nextScheduled != null) {
-                platform.log(" Scheduled: " + nextScheduled.getName());
+                platform.log(LogEvent.SCHEDULED, nextScheduled);
                 this.contextSwitches++;
             }
             return nextScheduled;
@@ -59,12 +75,12 @@ public class SchedulerRR extends SchedulerBase implements Scheduler {
         else {
             if (cpu.getElapsedBurst() != 0 && cpu.getElapsedBurst() % this.timeQuantum == 0) {
                 this.rrQueue.add(cpu);
-                platform.log(" Time quantum complete for process " + cpu.getName());
+                platform.log(LogEvent.QUANTUM_COMPLETE, cpu);
                 this.contextSwitches++;
 
                 nextScheduled = rrQueue.poll();
                 if (nextScheduled != null) {
-                    platform.log(" Scheduled: " + nextScheduled.getName());
+                    platform.log(LogEvent.SCHEDULED, nextScheduled);
                     this.contextSwitches++;
                 }
                 return nextScheduled;
@@ -31,15 +31,19 @@ public class SchedulerSJF extends SchedulerBase implements Scheduler {
         // if no process is running, then start one
         if (cpu == null) {
             Process scheduleProcess = sjfQueue.poll();
-            platform.log(" Scheduled: " + scheduleProcess.getName());
+            // nothing is ready, so the CPU stays idle
+            if (scheduleProcess == null) {
+                return null;
+            }
+            platform.log(LogEvent.SCHEDULED, scheduleProcess);
             this.contextSwitches++;
             return scheduleProcess;
         }
         // find if the current running process' burst time is complete
         if (cpu.isBurstComplete()) {
-            platform.log(" Process " + cpu.getName() + " burst complete");
+            platform.log(LogEvent.BURST_COMPLETE, cpu);
             if (cpu.isExecutionComplete()) {
-                platform.log(" Process " + cpu.getName() + " execution complete");
+                platform.log(LogEvent.EXECUTION_COMPLETE, cpu);
             }
             // If the execution is not complete, then add it back into the priority queue to finish running later
             else {
@@ -49,7 +53,7 @@ public class SchedulerSJF extends SchedulerBase implements Scheduler {
             this.contextSwitches++;
             Process scheduleProcess = sjfQueue.poll();
             if (scheduleProcess != null) {
-                platform.log(" Scheduled: " + scheduleProcess.getName());
+                platform.log(LogEvent.SCHEDULED, scheduleProcess);
                 this.contextSwitches++;
             }
             return scheduleProcess;
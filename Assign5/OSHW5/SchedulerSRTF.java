@@ -32,7 +32,11 @@ public class SchedulerSRTF extends SchedulerBase implements Scheduler {
         // if no process is running, then start one
         if (cpu == null) {
             Process scheduleProcess = srtfQueue.poll();
-            platform.log(" Scheduled: " + scheduleProcess.getName());
+            // nothing is ready, so the CPU stays idle
+            if (scheduleProcess == null) {
+                return null;
+            }
+            platform.log(LogEvent.SCHEDULED, scheduleProcess);
             this.contextSwitches++;
             return scheduleProcess;
         }
@@ -41,11 +45,11 @@ public class SchedulerSRTF extends SchedulerBase implements Scheduler {
         // if the next process has a smaller remaining burst, replace it as the running process and delete it from the queue
         if (nextScheduled != null && cpu.getRemainingBurst() > nextScheduled.getRemainingBurst()) {
             srtfQueue.poll();
-            platform.log(" Preemptively removed: " + cpu.getName());
+            platform.log(LogEvent.PREEMPTED, cpu);
             this.contextSwitches++;
             srtfQueue.add(cpu);
 
-            platform.log(" Scheduled: " + nextScheduled.getName());
+            platform.log(LogEvent.SCHEDULED, nextScheduled);
             this.contextSwitches++;
             return nextScheduled;
 
@@ -53,17 +57,24 @@ public class SchedulerSRTF extends SchedulerBase implements Scheduler {
         // The current running process has the shortest remaining burst, so check if the burst/execution is complete
         // if it is complete, then start the next process. if the execution is not complete, readd the process to the queue
         if (cpu.isBurstComplete()) {
-            platform.log(" Process " + cpu.getName() + " burst complete");
+            platform.log(LogEvent.BURST_COMPLETE, cpu);
             if (cpu.isExecutionComplete()) {
-                platform.log(" Process " + cpu.getName() + " execution complete");
+                platform.log(LogEvent.EXECUTION_COMPLETE, cpu);
             }
             else {
                 srtfQueue.add(cpu);
             }
             this.contextSwitches++;
-            srtfQueue.poll();
+            // take out the process picked before the current one went back in; with nothing else ready, the
+            // current one goes again
+            if (nextScheduled == null) {
+                nextScheduled = srtfQueue.poll();
+            }
+            else {
+                srtfQueue.remove(nextScheduled);
+            }
             if (nextScheduled != null) {
-                platform.log(" Scheduled: " + nextScheduled.getName());
+                platform.log(LogEvent.SCHEDULED, nextScheduled);
                 this.contextSwitches++;
             }
             return nextScheduled;
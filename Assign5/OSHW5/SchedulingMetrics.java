@@ -0,0 +1,87 @@
+import java.util.Locale;
+
+/**
+ * @author Benjamin Taylor
+ *
+ * What a simulation did for the processes, beyond the scheduler's count of context switches. For every
+ * process that completes it counts:
+ *   wait - time spent ready but not running
+ *   turnaround - time from arrival to completion
+ *   response - time from arrival to first getting a CPU
+ * each in a histogram so the tail is there as well as the mean, along with the throughput over the
+ * whole simulation. Times are in clock ticks.
+ */
+public class SchedulingMetrics {
+    // The names of the values in summary(), in order
+    public static final String[] SUMMARY_COLUMNS = {"completed", "throughput", "wait_mean", "wait_p50", "wait_p99",
+            "wait_p999", "turnaround_mean", "turnaround_p50", "turnaround_p99", "turnaround_p999", "response_mean",
+            "response_p50", "response_p99", "response_p999"};
+
+    private final TickHistogram wait = new TickHistogram();
+    private final TickHistogram turnaround = new TickHistogram();
+    private final TickHistogram response = new TickHistogram();
+    private long arrived = 0;
+    private int endTime = 0;
+    private int contextSwitches = 0;
+
+    // Counts a process handed to the scheduler
+    public void arrived(Process p) {
+        this.arrived++;
+    }
+
+    // Counts a process whose execution completed, once its times are all set
+    public void completed(Process p) {
+        this.wait.record(p.getWaitTime());
+        this.turnaround.record((long) p.getCompletionTime() - p.getArrivalTime());
+        this.response.record((long) p.getFirstRunTime() - p.getArrivalTime());
+    }
+
+    // Records how the simulation ended
+    public void finish(int endTime, int contextSwitches) {
+        this.endTime = endTime;
+        this.contextSwitches = contextSwitches;
+    }
+
+    public long getArrived() { return this.arrived; }
+    public long getCompleted() { return this.turnaround.getCount(); }
+    public int getEndTime() { return this.endTime; }
+    public int getContextSwitches() { return this.contextSwitches; }
+    public TickHistogram getWait() { return this.wait; }
+    public TickHistogram getTurnaround() { return this.turnaround; }
+    public TickHistogram getResponse() { return this.response; }
+
+    /**
+     * @return Processes completed per clock tick over the whole simulation
+     */
+    public double getThroughput() {
+        return this.endTime == 0 ? 0 : (double) getCompleted() / this.endTime;
+    }
+
+    /**
+     * @return The values named by SUMMARY_COLUMNS, for putting one simulation on one line
+     */
+    public double[] summary() {
+        return new double[] {getCompleted(), getThroughput(),
+                this.wait.getMean(), this.wait.quantile(0.5), this.wait.quantile(0.99), this.wait.quantile(0.999),
+                this.turnaround.getMean(), this.turnaround.quantile(0.5), this.turnaround.quantile(0.99),
+                this.turnaround.quantile(0.999),
+                this.response.getMean(), this.response.quantile(0.5), this.response.quantile(0.99),
+                this.response.quantile(0.999)};
+    }
+
+    /**
+     * @return Everything as one JSON object
+     */
+    public String toJson() {
+        return String.format(Locale.ROOT, "{\"arrived\":%d,\"completed\":%d,\"end_time\":%d,\"context_switches\":%d,"
+                        + "\"throughput\":%.6f,\"wait\":%s,\"turnaround\":%s,\"response\":%s}", this.arrived,
+                getCompleted(), this.endTime, this.contextSwitches, getThroughput(), toJson(this.wait),
+                toJson(this.turnaround), toJson(this.response));
+    }
+
+    private static String toJson(TickHistogram histogram) {
+        return String.format(Locale.ROOT, "{\"mean\":%.3f,\"p50\":%d,\"p99\":%d,\"p999\":%d,\"max\":%d}",
+                histogram.getMean(), histogram.quantile(0.5), histogram.quantile(0.99), histogram.quantile(0.999),
+                histogram.getMax());
+    }
+}
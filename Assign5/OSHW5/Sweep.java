@@ -0,0 +1,187 @@
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * @author Benjamin Taylor
+ *
+ * Runs every combination of scheduler, CPU count, time quantum and workload seed as its own simulation,
+ * spread over a pool of threads, for comparing the schedulers over many runs instead of one demo at a
+ * time. The quantum only matters to rr, so the other schedulers run once per CPU count and seed.
+ *
+ * Nothing is shared between the simulations: each gets its own platform with the log turned off, its
+ * own scheduler, and its own processes, generated again from the seed or read again from the trace, so
+ * the runs scale with the number of threads. Each run writes its results, including its waiting, turnaround
+ * and response time quantiles, into its own row of the result columns, which are written out as CSV once
+ * every run is done.
+ */
+public class Sweep {
+    private final String[] schedulers;
+    private final int[] cpuCounts;
+    private final int[] quanta;
+    private final long[] seeds;
+
+    // What to simulate; a trace if there is one, otherwise generated processes
+    private final Path trace;
+    private final long count;
+    private final double meanInterarrival;
+    private final String bursts;
+    private final double meanBurst;
+
+    // The runs, one per row
+    private String[] runScheduler;
+    private int[] runCpus;
+    private int[] runQuantum;
+    private long[] runSeed;
+
+    // The results, one per row, each written only by the thread running that row
+    private long[] contextSwitches;
+    private int[] endTime;
+    private double[] seconds;
+    private double[][] metrics;     // one column per SchedulingMetrics.SUMMARY_COLUMNS
+
+    /**
+     * @param trace Trace to replay in every run, or null to generate the processes from each seed
+     * @param count How many processes to generate, and the rest the same as for SyntheticWorkload
+     */
+    public Sweep(String[] schedulers, int[] cpuCounts, int[] quanta, long[] seeds, Path trace, long count,
+                 double meanInterarrival, String bursts, double meanBurst) {
+        this.schedulers = schedulers;
+        this.cpuCounts = cpuCounts;
+        this.quanta = quanta;
+        this.seeds = seeds;
+        this.trace = trace;
+        this.count = count;
+        this.meanInterarrival = meanInterarrival;
+        this.bursts = bursts;
+        this.meanBurst = meanBurst;
+        buildRuns();
+    }
+
+    // Lays out the cross product, one row per run; a trace is the same for every seed, so it only gets one
+    private void buildRuns() {
+        long[] runSeeds = this.trace != null ? new long[] {this.seeds[0]} : this.seeds;
+        int rows = 0;
+        for (String scheduler : this.schedulers) {
+            rows += (scheduler.equals("rr") ? this.quanta.length : 1) * this.cpuCounts.length * runSeeds.length;
+        }
+        this.runScheduler = new String[rows];
+        this.runCpus = new int[rows];
+        this.runQuantum = new int[rows];
+        this.runSeed = new long[rows];
+        this.contextSwitches = new long[rows];
+        this.endTime = new int[rows];
+        this.seconds = new double[rows];
+        this.metrics = new double[SchedulingMetrics.SUMMARY_COLUMNS.length][rows];
+
+        int row = 0;
+        for (String scheduler : this.schedulers) {
+            int[] runQuanta = scheduler.equals("rr") ? this.quanta : new int[] {0};
+            for (int cpus : this.cpuCounts) {
+                for (int quantum : runQuanta) {
+                    for (long seed : runSeeds) {
+                        this.runScheduler[row] = scheduler;
+                        this.runCpus[row] = cpus;
+                        this.runQuantum[row] = quantum;
+                        this.runSeed[row] = seed;
+                        row++;
+                    }
+                }
+            }
+        }
+    }
+
+    // How many simulations the sweep runs
+    public int size() {
+        return this.runScheduler.length;
+    }
+
+    /**
+     * Runs every simulation on a pool of the given size and waits for them all.
+     */
+    public void run(int threads) throws IOException, InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for (int i = 0; i < size(); i++) {
+                int row = i;
+                tasks.add(() -> {
+                    simulate(row);
+                    return null;
+                });
+            }
+            for (Future<Void> done : pool.invokeAll(tasks)) {
+                done.get();
+            }
+        }
+        catch (ExecutionException e) {
+            // Rethrow what the simulation threw as it is, so a bad trace is reported the same as without -sweep
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        }
+        finally {
+            pool.shutdownNow();
+        }
+    }
+
+    // Runs one row's simulation and fills in its results
+    private void simulate(int row) throws IOException {
+        long start = System.nanoTime();
+        Workload workload = this.trace != null ? Assign5.openTrace(this.trace)
+                : new SyntheticWorkload(this.count, this.meanInterarrival, this.bursts, this.meanBurst,
+                        this.runSeed[row]);
+        Platform platform = new Platform(this.runCpus[row], false);
+        Scheduler scheduler = Assign5.newScheduler(this.runScheduler[row], platform, this.runQuantum[row]);
+        platform.simulate(scheduler, workload);
+        this.contextSwitches[row] = scheduler.getNumberOfContextSwitches();
+        this.endTime[row] = platform.getClockCounter();
+        double[] summary = platform.getMetrics().summary();
+        for (int column = 0; column < summary.length; column++) {
+            this.metrics[column][row] = summary[column];
+        }
+        this.seconds[row] = (System.nanoTime() - start) / 1e9;
+    }
+
+    /**
+     * Writes a header and one line per run, with the scheduling metrics of each run after its own numbers.
+     * The quantum is left empty for the schedulers that don't use it. Numbers always use a decimal point,
+     * whatever the locale, so the commas only ever separate columns.
+     */
+    public void writeCsv(PrintStream out) {
+        out.print("scheduler,cpus,quantum,seed,context_switches,end_time,seconds");
+        for (String column : SchedulingMetrics.SUMMARY_COLUMNS) {
+            out.print("," + column);
+        }
+        out.println();
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < size(); i++) {
+            line.setLength(0);
+            line.append(String.format(Locale.ROOT, "%s,%d,%s,%d,%d,%d,%.4f", this.runScheduler[i], this.runCpus[i],
+                    this.runQuantum[i] == 0 ? "" : this.runQuantum[i], this.runSeed[i],
+                    this.contextSwitches[i], this.endTime[i], this.seconds[i]));
+            for (double[] column : this.metrics) {
+                // Counts and quantiles are whole ticks, means and the throughput aren't
+                line.append(',').append(column[i] == Math.rint(column[i]) ? Long.toString((long) column[i])
+                        : String.format(Locale.ROOT, "%.6f", column[i]));
+            }
+            out.println(line);
+        }
+        out.flush();
+    }
+}
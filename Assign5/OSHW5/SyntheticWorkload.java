@@ -0,0 +1,83 @@
+import java.util.Random;
+
+/**
+ * @author Benjamin Taylor
+ *
+ * Generates processes as they are asked for instead of holding them all. Arrivals are a Poisson process,
+ * so the time between them is exponential around the given mean. Burst times come from one of:
+ *   exponential - spread around the mean
+ *   pareto - heavy-tailed, mostly short bursts with the occasional very long one
+ *   bimodal - a mix of short interactive bursts and long batch bursts
+ * Each process runs for 1 to MAX_BURSTS bursts and gets a random priority. The same seed always gives
+ * the same workload.
+ */
+public class SyntheticWorkload extends WorkloadBase {
+    public static final String BURSTS = "exponential|pareto|bimodal";
+
+    private static final int MAX_BURSTS = 3;
+    private static final int PRIORITIES = 10;
+    private static final double PARETO_SHAPE = 1.5;         // a finite mean but an unbounded variance
+    private static final double BIMODAL_LONG_SHARE = 0.1;   // one long burst in ten...
+    private static final double BIMODAL_SHORT = 0.2;        // ...with the short ones at a fifth of the mean
+    private static final double BIMODAL_LONG = 8.2;         // and the long ones making up the rest of it
+
+    private final long count;
+    private final double meanInterarrival;
+    private final String bursts;
+    private final double meanBurst;
+    private final Random random;
+    private long generated = 0;
+    private double clock = 0;
+
+    /**
+     * @param count How many processes to generate
+     * @param meanInterarrival Mean time between arrivals
+     * @param bursts Which distribution the burst times come from, one of BURSTS
+     * @param meanBurst Mean burst time
+     * @param seed Seed for the random numbers
+     */
+    public SyntheticWorkload(long count, double meanInterarrival, String bursts, double meanBurst, long seed) {
+        if (!bursts.matches(BURSTS)) {
+            throw new IllegalArgumentException("Unknown burst distribution: " + bursts);
+        }
+        this.count = count;
+        this.meanInterarrival = meanInterarrival;
+        this.bursts = bursts;
+        this.meanBurst = meanBurst;
+        this.random = new Random(seed);
+    }
+
+    // The next process, or null once count have been made or the clock would run past the largest int
+    protected Process read() {
+        if (this.generated == this.count) {
+            return null;
+        }
+        this.clock += exponential(this.meanInterarrival);
+        if (this.clock > Integer.MAX_VALUE) {
+            return null;
+        }
+        this.generated++;
+        int burst = (int) Math.max(1, Math.min(Integer.MAX_VALUE / MAX_BURSTS, Math.round(burst())));
+        int total = burst * (1 + this.random.nextInt(MAX_BURSTS));
+        return new Process("P" + this.generated, (int) this.clock, burst, total, this.random.nextInt(PRIORITIES));
+    }
+
+    private double burst() {
+        switch (this.bursts) {
+            case "pareto":
+                // Scaled so the mean comes out at meanBurst
+                double scale = this.meanBurst * (PARETO_SHAPE - 1) / PARETO_SHAPE;
+                return scale / Math.pow(1 - this.random.nextDouble(), 1 / PARETO_SHAPE);
+            case "bimodal":
+                return this.random.nextDouble() < BIMODAL_LONG_SHARE
+                        ? exponential(this.meanBurst * BIMODAL_LONG)
+                        : exponential(this.meanBurst * BIMODAL_SHORT);
+            default:
+                return exponential(this.meanBurst);
+        }
+    }
+
+    private double exponential(double mean) {
+        return -mean * Math.log(1 - this.random.nextDouble());
+    }
+}
@@ -0,0 +1,73 @@
+/**
+ * @author Benjamin Taylor
+ *
+ * Counts times in clock ticks without keeping every one of them, so a simulation of millions of
+ * processes can still report its tail. Times below SUB_BUCKETS are counted exactly; above that each
+ * power of two is split into SUB_BUCKETS equal buckets, so a quantile is never off by more than
+ * 1 / SUB_BUCKETS of its value.
+ */
+public class TickHistogram {
+    private static final int SUB_BITS = 6;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+    // Row 0 holds the times below SUB_BUCKETS one each, row r above that the times with highest bit r + SUB_BITS - 1
+    private final long[] counts = new long[(Long.SIZE - SUB_BITS + 1) * SUB_BUCKETS];
+    private long count = 0;
+    private long sum = 0;
+    private long max = 0;
+
+    // Counts one time; negative times are counted as 0
+    public void record(long ticks) {
+        ticks = Math.max(0, ticks);
+        this.counts[bucket(ticks)]++;
+        this.count++;
+        this.sum += ticks;
+        this.max = Math.max(this.max, ticks);
+    }
+
+    public long getCount() { return this.count; }
+    public long getMax() { return this.max; }
+
+    // The mean of the counted times, 0 if there are none
+    public double getMean() {
+        return this.count == 0 ? 0 : (double) this.sum / this.count;
+    }
+
+    /**
+     * @param fraction Which quantile, e.g. 0.99
+     * @return The largest time in the bucket holding that quantile, never more than the largest time
+     *         counted; 0 if there are none
+     */
+    public long quantile(double fraction) {
+        long wanted = Math.max(1, (long) Math.ceil(fraction * this.count));
+        long seen = 0;
+        for (int i = 0; i < this.counts.length; i++) {
+            seen += this.counts[i];
+            if (seen >= wanted) {
+                return Math.min(this.max, upperBound(i));
+            }
+        }
+        return 0;
+    }
+
+    // The bucket of a time: its highest bit picks the row and the SUB_BITS bits below that pick the step
+    private static int bucket(long ticks) {
+        if (ticks < SUB_BUCKETS) {
+            return (int) ticks;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(ticks);
+        int step = (int) (ticks >>> (exponent - SUB_BITS)) - SUB_BUCKETS;
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + step;
+    }
+
+    // The largest time that lands in a bucket
+    private static long upperBound(int bucket) {
+        int row = bucket / SUB_BUCKETS;
+        if (row == 0) {
+            return bucket;
+        }
+        int shift = row - 1;
+        long low = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return low + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,28 @@
+import java.util.Queue;
+
+/**
+ * A source of processes for the simulation, handed out one at a time in order of arrival so that
+ * a big trace or generated workload never has to be held in memory all at once.
+ */
+public interface Workload {
+    /**
+     * @return The next process to arrive, without taking it; null once there are no more
+     */
+    Process peek();
+
+    /**
+     * Takes the next process to arrive.
+     * @return The process; null once there are no more
+     */
+    Process next();
+
+    /**
+     * A workload that hands out the processes in a queue, in the queue's order.
+     */
+    static Workload of(Queue<Process> processes) {
+        return new Workload() {
+            public Process peek() { return processes.peek(); }
+            public Process next() { return processes.poll(); }
+        };
+    }
+}
@@ -0,0 +1,26 @@
+/**
+ * The peek and next boilerplate shared by the workloads that make their processes as they go.
+ * Each only has to read or generate the next process; the one that was peeked at is held here
+ * until it is taken.
+ */
+public abstract class WorkloadBase implements Workload {
+    private Process upcoming;
+
+    /**
+     * @return The next process, or null once there are no more
+     */
+    protected abstract Process read();
+
+    public Process peek() {
+        if (this.upcoming == null) {
+            this.upcoming = read();
+        }
+        return this.upcoming;
+    }
+
+    public Process next() {
+        Process p = peek();
+        this.upcoming = null;
+        return p;
+    }
+}